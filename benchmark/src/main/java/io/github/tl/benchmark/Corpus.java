@@ -0,0 +1,172 @@
+package main.java.io.github.tl.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Programs the benchmarks run on.
+// Checked-in scripts are read from the resources of the language jar, the rest are generated here.
+public class Corpus {
+    // Number of repeated declarations in generated programs, keeps the front end busy
+    private static final int DECLARATIONS = 200;
+
+    public static String load(String name) {
+        switch (name) {
+            case "recursion": return recursion();
+            case "loops": return loops();
+            case "closures": return closures();
+            case "classes": return classes();
+            case "strings": return strings();
+            case "numeric": return numeric();
+            case "collections": return collections();
+            case "natives": return natives();
+        }
+        return checkedIn(name);
+    }
+
+    private static String checkedIn(String name) {
+        try (InputStream input = Corpus.class.getResourceAsStream("/resource/" + name + ".tl")) {
+            if (input == null) {
+                throw new IllegalArgumentException("Unknown program '" + name + "'.");
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //region generated programs
+    private static String recursion() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < DECLARATIONS; i++) {
+            source.append("fun sum").append(i).append("(n) {\n")
+                    .append("  if (n <= 0) return ").append(i).append(";\n")
+                    .append("  return n + sum").append(i).append("(n - 1);\n")
+                    .append("}\n");
+        }
+        source.append("fun fib(n) {\n")
+                .append("  if (n < 2) return n;\n")
+                .append("  return fib(n - 2) + fib(n - 1);\n")
+                .append("}\n")
+                .append("print fib(20) + sum0(100) + sum").append(DECLARATIONS - 1).append("(100);\n");
+        return source.toString();
+    }
+
+    private static String loops() {
+        StringBuilder source = new StringBuilder("var total = 0;\n");
+        for (int i = 0; i < DECLARATIONS; i++) {
+            source.append("for (var i = 0; i < 100; i = i + 1) {\n")
+                    .append("  var j = 0;\n")
+                    .append("  while (j < 10) {\n")
+                    .append("    if (j / 2 > ").append(i % 5).append(") total = total + j; else total = total - 1;\n")
+                    .append("    j = j + 1;\n")
+                    .append("  }\n")
+                    .append("}\n");
+        }
+        source.append("print total;\n");
+        return source.toString();
+    }
+
+    private static String closures() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < DECLARATIONS; i++) {
+            source.append("fun makeCounter").append(i).append("() {\n")
+                    .append("  var count = ").append(i).append(";\n")
+                    .append("  fun counter() {\n")
+                    .append("    count = count + 1;\n")
+                    .append("    return count;\n")
+                    .append("  }\n")
+                    .append("  return counter;\n")
+                    .append("}\n");
+        }
+        source.append("var total = 0;\n")
+                .append("for (var i = 0; i < 1000; i = i + 1) {\n")
+                .append("  var counter = makeCounter0();\n")
+                .append("  counter();\n")
+                .append("  total = total + counter() + makeCounter").append(DECLARATIONS - 1).append("()();\n")
+                .append("}\n")
+                .append("print total;\n");
+        return source.toString();
+    }
+
+    private static String classes() {
+        StringBuilder source = new StringBuilder();
+        source.append("class Shape0 {\n")
+                .append("  init(x, y) { this.x = x; this.y = y; }\n")
+                .append("  area() { return 0; }\n")
+                .append("  move(dx) { this.x = this.x + dx; return this; }\n")
+                .append("}\n");
+        for (int i = 1; i < DECLARATIONS; i++) {
+            source.append("class Shape").append(i).append(" < Shape").append(i - 1).append(" {\n")
+                    .append("  area() { return super.area() + this.x * this.y; }\n")
+                    .append("}\n");
+        }
+        source.append("var total = 0;\n")
+                .append("for (var i = 0; i < 1000; i = i + 1) {\n")
+                .append("  var shape = Shape").append(DECLARATIONS / 10).append("(i, 2);\n")
+                .append("  total = total + shape.move(1).area() + Shape0(i, i).area();\n")
+                .append("}\n")
+                .append("print total;\n");
+        return source.toString();
+    }
+
+    private static String strings() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < DECLARATIONS; i++) {
+            source.append("var greeting").append(i).append(" = \"Hello, \" + \"reader number \" + ").append(i).append(";\n");
+        }
+        source.append("var text = \"\";\n")
+                .append("for (var i = 0; i < 1000; i = i + 1) {\n")
+                .append("  text = text + greeting0 + \" \" + i;\n")
+                .append("  if (text == greeting").append(DECLARATIONS - 1).append(") print \"equal\";\n")
+                .append("}\n")
+                .append("print text == \"\";\n");
+        return source.toString();
+    }
+
+    // Arithmetic on locals only, should run without allocating a box per operation
+    private static String numeric() {
+        return "fun sum(n) {\n"
+                + "  var total = 0;\n"
+                + "  for (var i = 0; i < n; i = i + 1) {\n"
+                + "    total = total + i * i - i / 2;\n"
+                + "  }\n"
+                + "  return total;\n"
+                + "}\n"
+                + "var result = 0;\n"
+                + "for (var k = 0; k < 10; k = k + 1) {\n"
+                + "  result = result + sum(10000);\n"
+                + "}\n"
+                + "print result;\n";
+    }
+
+    // Arrays of numbers and a map counting keys, the data processing scripts did with chains of instances
+    private static String collections() {
+        return "var values = Array(0);\n"
+                + "for (var i = 0; i < 10000; i = i + 1) {\n"
+                + "  values.push(i * 7 - (i / 3) * 3);\n"
+                + "}\n"
+                + "var total = 0;\n"
+                + "for (var i = 0; i < values.length; i = i + 1) {\n"
+                + "  values[i] = values[i] * 2;\n"
+                + "  total = total + values[i];\n"
+                + "}\n"
+                + "var counts = Map();\n"
+                + "for (var i = 0; i < values.length; i = i + 1) {\n"
+                + "  var key = values[i] - (values[i] / 100) * 100;\n"
+                + "  if (counts.has(key)) counts[key] = counts[key] + 1; else counts[key] = 1;\n"
+                + "}\n"
+                + "print total + counts.size;\n";
+    }
+
+    // Natives of the standard library called in a loop, the call itself is what is measured
+    private static String natives() {
+        return "var total = 0;\n"
+                + "for (var i = 0; i < 100000; i = i + 1) {\n"
+                + "  total = total + floor(sqrt(i)) + min(i, 10) + len(str(i));\n"
+                + "}\n"
+                + "print total;\n";
+    }
+    //endregion
+}
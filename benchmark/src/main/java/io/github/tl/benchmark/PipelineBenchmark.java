@@ -0,0 +1,134 @@
+package main.java.io.github.tl.benchmark;
+
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.error.ErrorReporter;
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.optimize.Optimizer;
+import main.java.io.github.tl.parse.Parser;
+import main.java.io.github.tl.resolver.Resolver;
+import main.java.io.github.tl.scan.ByteSource;
+import main.java.io.github.tl.scan.Scanner;
+import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.scan.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Every stage of the pipeline measured on its own, each one gets the output of the previous stages from setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({
+            "fib", "closure", "class", "inheritance", "super", "for", "while", "wired",
+            "recursion", "loops", "closures", "classes", "strings", "numeric", "collections", "natives"
+    })
+    public String program;
+
+    private String source;
+
+    // Source off the heap, as a mapped file is
+    private ByteBuffer bytes;
+
+    private TokenBuffer tokens;
+
+    private List<Stmt> statements;
+
+    private final ErrorReporter reporter = new ErrorReporter(new PrintWriter(System.err, true));
+
+    // Scripts print, keep it out of the report
+    private final PrintWriter out = new PrintWriter(Writer.nullWriter());
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = Corpus.load(program);
+        byte[] encoded = source.getBytes(StandardCharsets.UTF_8);
+        bytes = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+        tokens = new Scanner(source, reporter).scanBuffer();
+        statements = new Parser(tokens, reporter).parse();
+        new Resolver(reporter).resolve(statements);
+    }
+
+    @Benchmark
+    public TokenBuffer scan() {
+        return new Scanner(source, reporter).scanBuffer();
+    }
+
+    // One object per token, as scanned before the token buffer
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source, reporter).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, reporter).parse();
+    }
+
+    // Scanner and parser together, tokens pulled one by one instead of listed first
+    @Benchmark
+    public List<Stmt> stream() {
+        return new Parser(new Scanner(new ByteSource(bytes), reporter).stream(), reporter).parse();
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        new Resolver(reporter).resolve(statements);
+        blackhole.consume(statements);
+    }
+
+    // Statements to run once, as a script compiled by an isolate is: resolved and optimized, with no cache
+    // or profile left over from an earlier run
+    @State(Scope.Thread)
+    public static class Fresh {
+        private List<Stmt> statements;
+
+        @Setup(Level.Invocation)
+        public void setUp(PipelineBenchmark pipeline) {
+            ErrorReporter reporter = pipeline.reporter;
+            statements = new Parser(new Scanner(pipeline.source, reporter).scanBuffer(), reporter).parse();
+            new Resolver(reporter).resolve(statements);
+            statements = new Optimizer().optimize(statements);
+        }
+    }
+
+    @Benchmark
+    public void interpret(Fresh fresh, Blackhole blackhole) {
+        Interpreter interpreter = new Interpreter(reporter, out);
+        interpreter.interpret(fresh.statements);
+        blackhole.consume(interpreter);
+    }
+
+    // Run everything with allocation rate from the GC profiler
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PipelineBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,235 @@
+package main.java.io.github.tl;
+
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.compile.Prototype;
+import main.java.io.github.tl.error.BufferedReporter;
+import main.java.io.github.tl.error.ErrorReporter;
+import main.java.io.github.tl.error.ScanError;
+import main.java.io.github.tl.interpret.Environment;
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.lib.NativeRegistry;
+import main.java.io.github.tl.lib.Rope;
+import main.java.io.github.tl.optimize.Optimizer;
+import main.java.io.github.tl.parse.Parser;
+import main.java.io.github.tl.profile.Profiler;
+import main.java.io.github.tl.resolver.Callable;
+import main.java.io.github.tl.resolver.Function;
+import main.java.io.github.tl.resolver.Instance;
+import main.java.io.github.tl.resolver.Resolver;
+import main.java.io.github.tl.scan.ByteSource;
+import main.java.io.github.tl.scan.Scanner;
+import main.java.io.github.tl.scan.TokenBuffer;
+import main.java.io.github.tl.vm.VM;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Independent instance of the language with its own globals, errors and output.
+// An isolate must be used by one thread at a time, but any number of them can run side by side
+// and share the scripts they compile.
+public class Isolate {
+    private final ErrorReporter reporter;
+
+    private final Interpreter interpreter;
+
+    // Run on bytecode VM instead of walking the AST
+    private final VM vm;
+
+    public Isolate(PrintWriter out, PrintWriter err) {
+        this(out, err, false);
+    }
+
+    public Isolate(PrintWriter out, PrintWriter err, boolean bytecode) {
+        this(new ErrorReporter(err, out), out, new Environment(), bytecode);
+    }
+
+    // Globals of the interpreter can be backed by a map of embedder, the VM keeps its own
+    public Isolate(ErrorReporter reporter, PrintWriter out, Environment globals, boolean bytecode) {
+        this.reporter = reporter;
+        this.interpreter = new Interpreter(reporter, out, globals);
+        this.vm = bytecode ? new VM(reporter, out) : null;
+    }
+
+    // Null if the source has any static error, which is reported
+    public Script compile(String source) {
+        return compile(source, reporter);
+    }
+
+    // Touches no state of isolate, like the compile of bytes below, so it needs no isolate at all
+    public static Script compile(String source, ErrorReporter reporter) {
+        // Get tokens
+        Scanner scanner = new Scanner(source, reporter);
+        TokenBuffer tokens = scanner.scanBuffer();
+        // Immediately stop compiling
+        if (reporter.hadError()) {
+            return null;
+        }
+        // Get expression
+        Parser parser = new Parser(tokens, reporter);
+        List<Stmt> statements = parser.parse();
+        // Immediately stop compiling
+        if (reporter.hadError()) {
+            return null;
+        }
+        return resolve(statements, reporter);
+    }
+
+    // Compile UTF-8 source like a memory-mapped file, tokens are scanned lazily as the parser pulls them,
+    // so neither the decoded source nor its tokens are ever held in whole
+    public Script compile(ByteBuffer source) {
+        return compile(source, reporter);
+    }
+
+    // Touches no state of isolate, so files can be compiled on any thread each with its own reporter
+    static Script compile(ByteBuffer source, ErrorReporter reporter) {
+        Parser parser;
+        List<Stmt> statements;
+        try {
+            parser = new Parser(new Scanner(new ByteSource(source), reporter).stream(), reporter);
+            statements = parser.parse();
+        } catch (ScanError e) {
+            // Reported by scanner, stop parsing there
+            return null;
+        }
+        // Immediately stop compiling
+        if (reporter.hadError()) {
+            return null;
+        }
+        return resolve(statements, reporter);
+    }
+
+    // Compile script files side by side on the pool, each one through its .tlc like a single file.
+    // Errors are reported afterwards in the order of files, so the output is the same as compiling one by one.
+    // Null if any file has a static error.
+    public List<Script> compileAll(List<Path> paths, ForkJoinPool pool) throws IOException {
+        List<ForkJoinTask<Script>> tasks = new ArrayList<>();
+        List<BufferedReporter> reporters = new ArrayList<>();
+        for (Path path : paths) {
+            BufferedReporter reporter = new BufferedReporter();
+            reporters.add(reporter);
+            tasks.add(pool.submit(() -> ScriptFile.compile(path, source -> compile(source, reporter))));
+        }
+
+        List<Script> scripts = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                scripts.add(tasks.get(i).get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            reporters.get(i).replay(reporter);
+        }
+        return reporter.hadError() ? null : scripts;
+    }
+
+    public List<Script> compileAll(List<Path> paths) throws IOException {
+        return compileAll(paths, ForkJoinPool.commonPool());
+    }
+
+    private static Script resolve(List<Stmt> statements, ErrorReporter reporter) {
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+        // Immediately stop compiling
+        if (reporter.hadError()) {
+            return null;
+        }
+        return new Script(new Optimizer().optimize(statements));
+    }
+
+    public void run(Script script) {
+        if (vm != null) {
+            Prototype prototype = script.prototype(reporter);
+            // Compile error like too many locals
+            if (prototype == null) {
+                return;
+            }
+            vm.interpret(prototype);
+        } else {
+            interpreter.interpret(script.statements());
+        }
+    }
+
+    public void eval(String source) {
+        Script script = compile(source);
+        if (script != null) {
+            run(script);
+        }
+    }
+
+    // Errors of a compile done with its own reporter, reported as if this isolate had compiled it
+    void replay(BufferedReporter errors) {
+        errors.replay(reporter);
+    }
+
+    public Environment globals() {
+        return interpreter.globals;
+    }
+
+    // Lines read by readLine of scripts, standard input of the process unless given
+    public void input(BufferedReader input) {
+        interpreter.input(input);
+        if (vm != null) {
+            vm.input(input);
+        }
+    }
+
+    // Natives of the embedder, like Java methods bound by their @Native annotation
+    public void define(NativeRegistry natives) {
+        interpreter.globals.define(natives);
+        if (vm != null) {
+            vm.define(natives);
+        }
+    }
+
+    // Call a function or class of script from host, runtime errors are thrown to the caller
+    public Object call(Callable callable, List<Object> arguments) {
+        if (callable.arity() != arguments.size()) {
+            throw new IllegalArgumentException("Expected " + callable.arity() +
+                    " arguments but got " + arguments.size() + ".");
+        }
+        // Host gets strings, never ropes
+        return Rope.flatten(callable.call(interpreter, arguments));
+    }
+
+    // Call a method found in the class of receiver from host
+    public Object invoke(Instance receiver, Function method, List<Object> arguments) {
+        if (method.arity() != arguments.size()) {
+            throw new IllegalArgumentException("Expected " + method.arity() +
+                    " arguments but got " + arguments.size() + ".");
+        }
+        return Rope.flatten(method.invoke(interpreter, receiver, arguments));
+    }
+
+    // Keep the call stack of script for the profiler, only followed by the interpreter
+    public void profile(Profiler profiler) {
+        interpreter.profiler = profiler;
+    }
+
+    public boolean hadError() {
+        return reporter.hadError();
+    }
+
+    public boolean hadRuntimeError() {
+        return reporter.hadRuntimeError();
+    }
+
+    // Forget errors of previous sources, as REPL does after every line
+    public void reset() {
+        reporter.reset();
+    }
+}
@@ -0,0 +1,151 @@
+package main.java.io.github.tl;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+// Sink of what scripts print. Characters gather in one reusable buffer and are only encoded and written
+// once it is full or flushed, instead of a write and flush per printed line.
+// Writes to a channel, a FileChannel directly or a stream like standard output wrapped in one.
+public class Output extends Writer {
+    private static final int CAPACITY = 1 << 16;
+
+    private final WritableByteChannel channel;
+    // Flushed after the channel, null if it has nothing of its own
+    private final Flushable target;
+
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(CAPACITY);
+    private final ByteBuffer bytes = ByteBuffer.allocate(CAPACITY);
+
+    private boolean closed = false;
+
+    public Output(OutputStream stream, Charset charset) {
+        this(Channels.newChannel(stream), stream, charset);
+    }
+
+    public Output(FileChannel channel, Charset charset) {
+        this(channel, null, charset);
+    }
+
+    private Output(WritableByteChannel channel, Flushable target, Charset charset) {
+        this.channel = channel;
+        this.target = target;
+        // Characters the charset can't encode come out as its replacement, like any other writer
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            chars.put((char) c);
+        }
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            int end = offset + length;
+            while (offset < end) {
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+                int count = Math.min(chars.remaining(), end - offset);
+                chars.put(buffer, offset, count);
+                offset += count;
+            }
+        }
+    }
+
+    // Straight from the string, without copying it to an array first
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            int end = offset + length;
+            while (offset < end) {
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+                int count = Math.min(chars.remaining(), end - offset);
+                chars.put(text, offset, offset + count);
+                offset += count;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            encode(false);
+            if (target != null) {
+                target.flush();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+            if (target != null) {
+                target.flush();
+            }
+            closed = true;
+            channel.close();
+        }
+    }
+
+    // Encode every buffered character and write the bytes, but the first half of a surrogate pair waits for its other half
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (!result.isOverflow()) {
+                break;
+            }
+            drain();
+        }
+        chars.compact();
+        drain();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Output is closed.");
+        }
+    }
+}
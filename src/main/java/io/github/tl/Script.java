@@ -0,0 +1,60 @@
+package main.java.io.github.tl;
+
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.compile.Compiler;
+import main.java.io.github.tl.compile.Prototype;
+import main.java.io.github.tl.error.ErrorReporter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+// Source which has been scanned, parsed and resolved.
+// It holds no state of any run, so one script can be run by many isolates at the same time.
+public class Script {
+    private final List<Stmt> statements;
+
+    // Bytecode for the VM, compiled on the first run which needs it
+    private volatile Prototype prototype = null;
+
+    Script(List<Stmt> statements) {
+        this.statements = List.copyOf(statements);
+    }
+
+    public List<Stmt> statements() {
+        return statements;
+    }
+
+    // Identity of source, SHA-256 in hex
+    public static String hash(String source) {
+        return hash(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Same identity for UTF-8 source in a buffer, read without moving its position
+    public static String hash(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Null if the compiler reports an error
+    Prototype prototype(ErrorReporter reporter) {
+        Prototype prototype = this.prototype;
+        if (prototype == null) {
+            prototype = new Compiler(reporter).compile(statements);
+            if (reporter.hadError()) {
+                return null;
+            }
+            this.prototype = prototype;
+        }
+        return prototype;
+    }
+}
@@ -0,0 +1,113 @@
+package main.java.io.github.tl;
+
+import main.java.io.github.tl.error.BufferedReporter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Compiled scripts by the hash of their source, so running the same source again skips scanner, parser and resolver.
+// Least recently used scripts are dropped once the sources held exceed the capacity in characters.
+// Shared by isolates on any thread.
+public class ScriptCache {
+    private final long capacity;
+
+    // Ordered by access, eldest first
+    private final LinkedHashMap<String, Entry> scripts = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight = 0;
+
+    //region metrics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    //endregion
+
+    private static class Entry {
+        final Script script;
+        final int weight;
+
+        Entry(Script script, int weight) {
+            this.script = script;
+            this.weight = weight;
+        }
+    }
+
+    public ScriptCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    // Null if the source has any static error, which is reported by the isolate and not cached
+    public Script compile(Isolate isolate, String source) {
+        String hash = Script.hash(source);
+        synchronized (this) {
+            Entry entry = scripts.get(hash);
+            if (entry != null) {
+                hits++;
+                return entry.script;
+            }
+            misses++;
+        }
+
+        // Compile outside of lock, the same source compiled twice at once is harmless.
+        // A reporter of its own, since the one of isolate still has errors of earlier sources until reset
+        BufferedReporter errors = new BufferedReporter();
+        Script script = Isolate.compile(source, errors);
+        isolate.replay(errors);
+        if (script != null) {
+            put(hash, new Entry(script, source.length()));
+        }
+        return script;
+    }
+
+    private synchronized void put(String hash, Entry entry) {
+        Entry previous = scripts.put(hash, entry);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entry.weight;
+
+        Iterator<Map.Entry<String, Entry>> eldest = scripts.entrySet().iterator();
+        // Always keep the newest one, even if it is larger than the capacity alone
+        while (weight > capacity && scripts.size() > 1) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            weight -= evicted.weight;
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        scripts.clear();
+        weight = 0;
+    }
+
+    //region metrics
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return scripts.size();
+    }
+
+    // Characters of source held by the cached scripts
+    public synchronized long weight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScriptCache(" + size() + " scripts, " + weight + "/" + capacity + " chars, "
+                + hits + " hits, " + misses + " misses, " + evictions + " evictions)";
+    }
+    //endregion
+}
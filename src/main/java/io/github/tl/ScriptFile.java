@@ -0,0 +1,124 @@
+package main.java.io.github.tl;
+
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.serial.AstReader;
+import main.java.io.github.tl.serial.AstWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+// Compiled script saved next to its source as .tlc, so later runs skip scanner, parser and resolver.
+// The file starts with magic, format version, the hash of source it was compiled from and a checksum of the tree,
+// anything which doesn't match is ignored and compiled again.
+public class ScriptFile {
+    private static final int MAGIC = 0x544c4321;   // "TLC!"
+
+    // Bump whenever AST, token types or the tree encoding change
+    private static final int VERSION = 6;
+
+    private static final int HASH_LENGTH = 64;
+
+    public static Path pathOf(Path source) {
+        String name = source.getFileName().toString();
+        if (name.endsWith(".tl")) {
+            name = name.substring(0, name.length() - ".tl".length());
+        }
+        return source.resolveSibling(name + ".tlc");
+    }
+
+    // Load the compiled script of the source file, or compile and save it. Null on static errors.
+    // Source is mapped rather than read, so large files are hashed and scanned without copying them onto the heap.
+    public static Script compile(Isolate isolate, Path path) throws IOException {
+        return compile(path, isolate::compile);
+    }
+
+    static Script compile(Path path, Function<ByteBuffer, Script> compiler) throws IOException {
+        MappedByteBuffer source;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Path compiled = pathOf(path);
+        String hash = Script.hash(source);
+        Script script = read(compiled, hash);
+        if (script != null) {
+            return script;
+        }
+
+        script = compiler.apply(source);
+        if (script != null) {
+            try {
+                write(compiled, hash, script);
+            } catch (IOException e) {
+                // Only a cache, running the script doesn't need it
+            }
+        }
+        return script;
+    }
+
+    // Null if the file is missing, stale or malformed
+    public static Script read(Path path, String hash) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] expected = hash.getBytes(StandardCharsets.US_ASCII);
+            byte[] actual = new byte[HASH_LENGTH];
+            buffer.get(actual);
+            if (!Arrays.equals(expected, actual)) {
+                return null;
+            }
+            int checksum = buffer.getInt();
+            if (checksum != checksum(buffer.slice())) {
+                return null;
+            }
+            List<Stmt> statements = new AstReader(buffer.slice()).read();
+            return new Script(statements);
+        } catch (IOException | RuntimeException e) {
+            // Corrupted past what the checksum catches, decoding fails somewhere
+            return null;
+        }
+    }
+
+    private static int checksum(ByteBuffer tree) {
+        CRC32 crc = new CRC32();
+        crc.update(tree);
+        return (int) crc.getValue();
+    }
+
+    public static void write(Path path, String hash, Script script) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(hash.getBytes(StandardCharsets.US_ASCII));
+        byte[] tree = new AstWriter().write(script.statements());
+        out.writeInt(checksum(ByteBuffer.wrap(tree)));
+        out.write(tree);
+
+        // Write aside and move, readers never see a half written file
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -1,113 +1,148 @@
 package main.java.io.github.tl;
 
-import main.java.io.github.tl.error.RuntimeError;
-import main.java.io.github.tl.interpret.Interpreter;
-import main.java.io.github.tl.resolver.Resolver;
-import main.java.io.github.tl.parse.Parser;
-import main.java.io.github.tl.ast.Stmt;
-import main.java.io.github.tl.scan.Scanner;
-import main.java.io.github.tl.scan.Token;
-import main.java.io.github.tl.scan.TokenType;
+import main.java.io.github.tl.lib.StandardLibrary;
+import main.java.io.github.tl.profile.Profiler;
+import main.java.io.github.tl.tools.AstPrinter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 public class TinyLanguage {
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-    static Interpreter interpreter = new Interpreter();
+    public static void main(String[] args) throws IOException {
+        List<String> paths = new ArrayList<>();
+        // Run on bytecode VM instead of walking the AST
+        boolean bytecode = false;
+        // Sample call stack of script, written next to it when done
+        Profiler profiler = null;
+        // Print the optimized tree of script instead of running it
+        boolean dump = false;
+        // File scripts print into instead of standard output
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--out") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (arg.equals("--vm")) {
+                bytecode = true;
+            } else if (arg.equals("--profile")) {
+                profiler = new Profiler();
+            } else if (arg.equals("--ast")) {
+                dump = true;
+            } else {
+                paths.add(arg);
+            }
+        }
 
-    public static void main(String[] args) throws IOException, InterruptedException {
-        if (args.length > 1) {
-            System.out.println("Usage: tl [script]");
+        if ((profiler != null || dump) && (bytecode || paths.size() != 1) || (profiler != null && dump)) {
+            System.out.println("Usage: tl [--vm] [--out file] [script | directory]... | tl --profile script | tl --ast script");
             System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        }
+
+        // Buffered and flushed when full, before errors, input and prompt, and on exit
+        Output sink = output == null
+                ? new Output(System.out, Charset.defaultCharset())
+                : new Output(FileChannel.open(Paths.get(output), CREATE, WRITE, TRUNCATE_EXISTING), StandardCharsets.UTF_8);
+        PrintWriter out = new PrintWriter(sink);
+        Runtime.getRuntime().addShutdownHook(new Thread(out::flush));
+
+        Isolate isolate = new Isolate(out, new PrintWriter(System.err, true), bytecode);
+        if (dump) {
+            dumpFile(isolate, paths.get(0));
+        } else if (paths.size() == 1 && !Files.isDirectory(Paths.get(paths.get(0)))) {
+            runFile(isolate, paths.get(0), profiler);
+        } else if (!paths.isEmpty()) {
+            runFiles(isolate, paths);
         } else {
-            runPrompt();
+            runPrompt(isolate, out);
         }
     }
 
-    private static void runPrompt() throws IOException, InterruptedException {
-        InputStreamReader inputStreamReader = new InputStreamReader(System.in);
-        BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+    private static void runPrompt(Isolate isolate, PrintWriter out) throws IOException {
+        // Shared with readLine of scripts, so neither reads lines ahead of the other
+        BufferedReader bufferedReader = StandardLibrary.standardInput();
 
         while (true) {
-            // Distinguish stdout and stderr
-            Thread.sleep(100);
-            System.out.print(">>> ");
+            // Errors were written after flushing what the line printed, the prompt comes after both
+            out.print(">>> ");
+            out.flush();
             String line = bufferedReader.readLine();
             if (line == null) {
                 break;
             }
-            run(line);
-            hadError = false;
+            isolate.eval(line);
+            isolate.reset();
         }
     }
 
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+    private static void runFile(Isolate isolate, String path, Profiler profiler) throws IOException {
+        // Prefer the compiled script saved by an earlier run
+        Script script = ScriptFile.compile(isolate, Paths.get(path));
+        if (script != null && profiler != null) {
+            isolate.profile(profiler);
+            profiler.start();
+            isolate.run(script);
+            profiler.stop();
+            // Collapsed stacks for flame graph
+            profiler.write(path + ".collapsed");
+        } else if (script != null) {
+            isolate.run(script);
+        }
 
-        if (hadError) {
+        if (isolate.hadError()) {
             System.exit(65);
         }
-        if (hadRuntimeError) {
+        if (isolate.hadRuntimeError()) {
             System.exit(70);
         }
     }
 
-    private static void run(String source) {
-        // Get tokens
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        // Immediately stop compiling
-        if (hadError) {
-            return;
-        }
-        // Get expression
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-        // Immediately stop compiling
-        if (hadError) {
-            return;
-        }
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-        // Immediately stop compiling
-        if (hadError) {
-            return;
+    private static void dumpFile(Isolate isolate, String path) throws IOException {
+        Script script = ScriptFile.compile(isolate, Paths.get(path));
+        if (script == null) {
+            System.exit(65);
         }
-
-        interpreter.interpret(statements);
+        System.out.print(new AstPrinter().print(script.statements()));
     }
 
-    // Error from scanner
-    public static void error(int line, String message) {
-        hadError = true;
-        System.err.println("Line " + line + ": " + message);
-    }
-
-    // Error from parser
-    public static void error(Token token, String message) {
-        hadError = true;
-        if (token.type == TokenType.EOF) {
-            System.err.println(token.line + " at end" + message);
-        } else {
-            System.err.println(token.line + " at '" + token.lexeme + "'" + message);
+    // Scripts given one by one or as directories of them, compiled in parallel and run in order into the same globals
+    private static void runFiles(Isolate isolate, List<String> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String path : paths) {
+            Path file = Paths.get(path);
+            if (Files.isDirectory(file)) {
+                // Sorted by name, so scripts run in the same order everywhere
+                try (Stream<Path> children = Files.list(file)) {
+                    children.filter(child -> child.toString().endsWith(".tl")).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(file);
+            }
         }
-    }
 
-    // Error from interpreter
-    public static void runtimeError(RuntimeError error) {
-        hadRuntimeError = true;
-        System.err.println(error.getMessage() +
-                "\n[line " + error.token.line + "]");
+        List<Script> scripts = isolate.compileAll(files);
+        if (scripts == null) {
+            System.exit(65);
+        }
+        for (Script script : scripts) {
+            isolate.run(script);
+            // Later scripts may depend on what this one failed to define
+            if (isolate.hadRuntimeError()) {
+                System.exit(70);
+            }
+        }
     }
-
 }
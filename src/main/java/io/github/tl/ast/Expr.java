@@ -1,5 +1,8 @@
 package main.java.io.github.tl.ast;
 
+import main.java.io.github.tl.interpret.BinaryNode;
+import main.java.io.github.tl.interpret.MethodCache;
+import main.java.io.github.tl.interpret.PropertyCache;
 import main.java.io.github.tl.scan.Token;
 
 import java.util.List;
@@ -11,6 +14,8 @@ public abstract class Expr {
     R visitCallExpr(Call expr);
     R visitGetExpr(Get expr);
     R visitSetExpr(Set expr);
+    R visitIndexExpr(Index expr);
+    R visitSetIndexExpr(SetIndex expr);
     R visitLogicalExpr(Logical expr);
     R visitGroupingExpr(Grouping expr);
     R visitLiteralExpr(Literal expr);
@@ -34,6 +39,8 @@ public abstract class Expr {
 
     public final Token name;
     public final Expr value;
+    public int depth = -1;
+    public int slot = -1;
   }
 
   public static class Binary extends Expr {
@@ -51,6 +58,7 @@ public abstract class Expr {
     public final Expr left;
     public final Token operator;
     public final Expr right;
+    public BinaryNode node = BinaryNode.UNINITIALIZED;
   }
 
   public static class Call extends Expr {
@@ -68,6 +76,8 @@ public abstract class Expr {
     public final Expr callee;
     public final Token paren;
     public final List<Expr> arguments;
+    public MethodCache methods;
+    public boolean tail;
   }
 
   public static class Get extends Expr {
@@ -83,6 +93,7 @@ public abstract class Expr {
 
     public final Expr object;
     public final Token name;
+    public PropertyCache cache;
   }
 
   public static class Set extends Expr {
@@ -100,6 +111,43 @@ public abstract class Expr {
     public final Expr object;
     public final Token name;
     public final Expr value;
+    public PropertyCache cache;
+  }
+
+  public static class Index extends Expr {
+    public Index(Expr object, Token bracket, Expr index) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIndexExpr(this);
+    }
+
+    public final Expr object;
+    public final Token bracket;
+    public final Expr index;
+  }
+
+  public static class SetIndex extends Expr {
+    public SetIndex(Expr object, Token bracket, Expr index, Expr value) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSetIndexExpr(this);
+    }
+
+    public final Expr object;
+    public final Token bracket;
+    public final Expr index;
+    public final Expr value;
   }
 
   public static class Logical extends Expr {
@@ -156,6 +204,7 @@ public abstract class Expr {
     }
 
     public final Token keyword;
+    public int depth = -1;
   }
 
   public static class Super extends Expr {
@@ -171,6 +220,7 @@ public abstract class Expr {
 
     public final Token keyword;
     public final Token method;
+    public int depth = -1;
   }
 
   public static class Unary extends Expr {
@@ -220,6 +270,8 @@ public abstract class Expr {
     }
 
     public final Token name;
+    public int depth = -1;
+    public int slot = -1;
   }
 
 
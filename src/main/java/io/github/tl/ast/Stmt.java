@@ -1,5 +1,7 @@
 package main.java.io.github.tl.ast;
 
+import main.java.io.github.tl.jit.CompiledFunction;
+import main.java.io.github.tl.resolver.Shape;
 import main.java.io.github.tl.scan.Token;
 
 import java.util.List;
@@ -60,6 +62,7 @@ public abstract class Stmt {
     }
 
     public final List<Stmt> statements;
+    public int locals;
   }
 
   public static class Expression extends Stmt {
@@ -90,6 +93,10 @@ public abstract class Stmt {
     public final Token name;
     public final List<Token> params;
     public final List<Stmt> body;
+    public int slot = -1;
+    public int locals;
+    public int calls;
+    public CompiledFunction compiled;
   }
 
   public static class Class extends Stmt {
@@ -107,6 +114,8 @@ public abstract class Stmt {
     public final Token name;
     public final Expr.Variable superclass;
     public final List<Stmt.Function> methods;
+    public int slot = -1;
+    public Shape shape = new Shape();
   }
 
   public static class Print extends Stmt {
@@ -150,6 +159,7 @@ public abstract class Stmt {
 
     public final Token name;
     public final Expr initializer;
+    public int slot = -1;
   }
 
 
@@ -0,0 +1,68 @@
+package main.java.io.github.tl.compile;
+
+import main.java.io.github.tl.scan.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Chunk {
+    private byte[] code = new byte[64];
+    // Source token of every byte, used to report runtime errors
+    private Token[] tokens = new Token[64];
+    private int count = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    public void write(int value, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+        code[count] = (byte) value;
+        tokens[count] = token;
+        count++;
+    }
+
+    public void patch(int offset, int value) {
+        code[offset] = (byte) value;
+    }
+
+    public int addConstant(Object value) {
+        // Reuse the same slot for equal strings and numbers
+        if (value instanceof String || value instanceof Double) {
+            Integer index = constantIndex.get(value);
+            if (index != null) {
+                return index;
+            }
+            constantIndex.put(value, constants.size());
+        }
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // Trim arrays to their final size once the function is compiled
+    void seal() {
+        code = Arrays.copyOf(code, count);
+        tokens = Arrays.copyOf(tokens, count);
+    }
+
+    public byte[] code() {
+        return code;
+    }
+
+    public Token tokenAt(int offset) {
+        return tokens[offset];
+    }
+
+    public Object[] constants() {
+        return constants.toArray();
+    }
+}
@@ -0,0 +1,576 @@
+package main.java.io.github.tl.compile;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.error.ErrorReporter;
+import main.java.io.github.tl.resolver.FunctionType;
+import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.scan.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Lower the resolved AST into bytecode for the VM.
+// Locals live in the stack slots of their function, captured variables become upvalues.
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static final int MAX_LOCALS = 256;
+    private static final int MAX_UPVALUES = 256;
+    private static final int MAX_SHORT = 65535;
+
+    private static class Local {
+        final String name;
+        int depth;              // -1 before the initializer has been compiled
+        boolean isCaptured = false;
+
+        Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+
+    private static class UpvalueRef {
+        final int index;
+        final boolean isLocal;
+
+        UpvalueRef(int index, boolean isLocal) {
+            this.index = index;
+            this.isLocal = isLocal;
+        }
+    }
+
+    private static class FunctionState {
+        final FunctionState enclosing;
+        final FunctionType type;
+        final Chunk chunk = new Chunk();
+        final List<Local> locals = new ArrayList<>();
+        final List<UpvalueRef> upvalues = new ArrayList<>();
+        int scopeDepth = 0;
+
+        FunctionState(FunctionState enclosing, FunctionType type) {
+            this.enclosing = enclosing;
+            this.type = type;
+            // Slot zero holds the callee, or the receiver inside methods
+            locals.add(new Local(type == FunctionType.METHOD || type == FunctionType.INITIALIZER ? "this" : "", 0));
+        }
+    }
+
+    private FunctionState current;
+    // The token attached to the emitted bytes, used by the VM to report errors
+    private Token token;
+
+    private final ErrorReporter reporter;
+
+    public Compiler(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    public Prototype compile(List<Stmt> statements) {
+        current = new FunctionState(null, FunctionType.NONE);
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emitReturn();
+        return new Prototype(null, 0, 0, current.chunk);
+    }
+
+    //region override part
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+        token = expr.name;
+        setVariable(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        token = expr.operator;
+        switch (expr.operator.type) {
+            case BANG_EQUAL: emit(OpCode.NOT_EQUAL); break;
+            case EQUAL_EQUAL: emit(OpCode.EQUAL); break;
+            case GREATER: emit(OpCode.GREATER); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL); break;
+            case LESS: emit(OpCode.LESS); break;
+            case LESS_EQUAL: emit(OpCode.LESS_EQUAL); break;
+            case PLUS: emit(OpCode.ADD); break;
+            case MINUS: emit(OpCode.SUBTRACT); break;
+            case SLASH: emit(OpCode.DIVIDE); break;
+            case STAR: emit(OpCode.MULTIPLY); break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        compile(expr.callee);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+        token = expr.paren;
+        emit(expr.tail ? OpCode.TAIL_CALL : OpCode.CALL);
+        emit(expr.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        compile(expr.object);
+        token = expr.name;
+        emitWithShort(OpCode.GET_PROPERTY, constant(expr.name.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        compile(expr.object);
+        // Fail on the object before the value runs, as the interpreter does
+        token = expr.name;
+        emit(OpCode.CHECK_INSTANCE);
+        compile(expr.value);
+        token = expr.name;
+        emitWithShort(OpCode.SET_PROPERTY, constant(expr.name.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        compile(expr.object);
+        compile(expr.index);
+        token = expr.bracket;
+        emit(OpCode.GET_INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        compile(expr.object);
+        compile(expr.index);
+        compile(expr.value);
+        token = expr.bracket;
+        emit(OpCode.SET_INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+        token = expr.operator;
+        int endJump;
+        if (expr.operator.type == TokenType.AND) {
+            endJump = emitJump(OpCode.JUMP_IF_FALSE);
+        } else {
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+            endJump = emitJump(OpCode.JUMP);
+            patchJump(elseJump);
+        }
+        emit(OpCode.POP);
+        compile(expr.right);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL);
+        } else if (expr.value instanceof Boolean) {
+            emit((Boolean) expr.value ? OpCode.TRUE : OpCode.FALSE);
+        } else {
+            emitWithShort(OpCode.CONSTANT, constant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        token = expr.keyword;
+        getVariable(expr.keyword, "this");
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        token = expr.keyword;
+        getVariable(expr.keyword, "this");
+        getVariable(expr.keyword, "super");
+        token = expr.method;
+        emitWithShort(OpCode.GET_SUPER, constant(expr.method.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+        token = expr.operator;
+        switch (expr.operator.type) {
+            case BANG: emit(OpCode.NOT); break;
+            case MINUS: emit(OpCode.NEGATE); break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        compile(expr.condition);
+        token = expr.question;
+        int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        compile(expr.left);
+        token = expr.question;
+        emit(OpCode.CHECK_NUMBER);
+        int endJump = emitJump(OpCode.JUMP);
+        patchJump(elseJump);
+        emit(OpCode.POP);
+        compile(expr.right);
+        token = expr.question;
+        emit(OpCode.CHECK_NUMBER);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        token = expr.name;
+        getVariable(expr.name, expr.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+        int thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        compile(stmt.thenBranch);
+        int elseJump = emitJump(OpCode.JUMP);
+        patchJump(thenJump);
+        emit(OpCode.POP);
+        if (stmt.elseBranch != null) {
+            compile(stmt.elseBranch);
+        }
+        patchJump(elseJump);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int loopStart = current.chunk.count();
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        compile(stmt.body);
+        emitLoop(loopStart);
+        patchJump(exitJump);
+        emit(OpCode.POP);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        beginScope();
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        token = stmt.name;
+        declareVariable(stmt.name);
+        // Function could refer to itself
+        markInitialized();
+        function(stmt, FunctionType.FUNCTION);
+        defineVariable(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        token = stmt.name;
+        int name = constant(stmt.name.lexeme);
+        declareVariable(stmt.name);
+        emitWithShort(OpCode.CLASS, name);
+        defineVariable(stmt.name);
+
+        if (stmt.superclass != null) {
+            compile(stmt.superclass);
+            beginScope();
+            addLocal(stmt.superclass.name, "super");
+            markInitialized();
+
+            getVariable(stmt.name, stmt.name.lexeme);
+            token = stmt.superclass.name;
+            emit(OpCode.INHERIT);
+        }
+
+        getVariable(stmt.name, stmt.name.lexeme);
+        for (Stmt.Function method : stmt.methods) {
+            token = method.name;
+            int methodName = constant(method.name.lexeme);
+            function(method, method.name.lexeme.equals("init") ? FunctionType.INITIALIZER : FunctionType.METHOD);
+            emitWithShort(OpCode.METHOD, methodName);
+        }
+        emit(OpCode.POP);
+
+        if (stmt.superclass != null) {
+            endScope();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        token = stmt.keyword;
+        if (stmt.value == null) {
+            emitReturn();
+        } else {
+            compile(stmt.value);
+            // Only reached after a tail call when the callee wasn't a function, like a native or class
+            emit(OpCode.RETURN);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        token = stmt.name;
+        declareVariable(stmt.name);
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(OpCode.NIL);
+        }
+        markInitialized();
+        defineVariable(stmt.name);
+        return null;
+    }
+    //endregion
+
+    //region function and scope part
+    private void function(Stmt.Function stmt, FunctionType type) {
+        FunctionState state = new FunctionState(current, type);
+        current = state;
+        beginScope();
+        for (Token param : stmt.params) {
+            declareVariable(param);
+            markInitialized();
+        }
+        for (Stmt statement : stmt.body) {
+            compile(statement);
+        }
+        emitReturn();
+        current = state.enclosing;
+
+        Prototype prototype = new Prototype(stmt.name.lexeme, stmt.params.size(), state.upvalues.size(), state.chunk);
+        token = stmt.name;
+        emitWithShort(OpCode.CLOSURE, constant(prototype));
+        for (UpvalueRef upvalue : state.upvalues) {
+            emit(upvalue.isLocal ? 1 : 0);
+            emit(upvalue.index);
+        }
+    }
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+        List<Local> locals = current.locals;
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            emit(locals.get(locals.size() - 1).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    private void declareVariable(Token name) {
+        if (current.scopeDepth == 0) return;
+        addLocal(name, name.lexeme);
+    }
+
+    private void addLocal(Token name, String lexeme) {
+        if (current.locals.size() == MAX_LOCALS) {
+            error(name, "Too many local variables in function.");
+            return;
+        }
+        current.locals.add(new Local(lexeme, -1));
+    }
+
+    private void markInitialized() {
+        if (current.scopeDepth == 0) return;
+        current.locals.get(current.locals.size() - 1).depth = current.scopeDepth;
+    }
+
+    private void defineVariable(Token name) {
+        // Locals simply stay on the stack
+        if (current.scopeDepth > 0) return;
+        emitWithShort(OpCode.DEFINE_GLOBAL, constant(name.lexeme));
+    }
+
+    private void getVariable(Token name, String lexeme) {
+        int slot = resolveLocal(current, lexeme);
+        if (slot != -1) {
+            // Reading a local inside its own initializer gives nil like the interpreter
+            if (current.locals.get(slot).depth == -1) {
+                emit(OpCode.NIL);
+            } else {
+                emit(OpCode.GET_LOCAL);
+                emit(slot);
+            }
+            return;
+        }
+        int upvalue = resolveUpvalue(current, name, lexeme);
+        if (upvalue != -1) {
+            emit(OpCode.GET_UPVALUE);
+            emit(upvalue);
+            return;
+        }
+        emitWithShort(OpCode.GET_GLOBAL, constant(lexeme));
+    }
+
+    private void setVariable(Token name) {
+        int slot = resolveLocal(current, name.lexeme);
+        if (slot != -1) {
+            emit(OpCode.SET_LOCAL);
+            emit(slot);
+            return;
+        }
+        int upvalue = resolveUpvalue(current, name, name.lexeme);
+        if (upvalue != -1) {
+            emit(OpCode.SET_UPVALUE);
+            emit(upvalue);
+            return;
+        }
+        emitWithShort(OpCode.SET_GLOBAL, constant(name.lexeme));
+    }
+
+    private int resolveLocal(FunctionState state, String lexeme) {
+        for (int i = state.locals.size() - 1; i >= 0; i--) {
+            if (state.locals.get(i).name.equals(lexeme)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int resolveUpvalue(FunctionState state, Token name, String lexeme) {
+        if (state.enclosing == null) return -1;
+
+        int local = resolveLocal(state.enclosing, lexeme);
+        if (local != -1) {
+            state.enclosing.locals.get(local).isCaptured = true;
+            return addUpvalue(state, name, local, true);
+        }
+
+        int upvalue = resolveUpvalue(state.enclosing, name, lexeme);
+        if (upvalue != -1) {
+            return addUpvalue(state, name, upvalue, false);
+        }
+        return -1;
+    }
+
+    private int addUpvalue(FunctionState state, Token name, int index, boolean isLocal) {
+        for (int i = 0; i < state.upvalues.size(); i++) {
+            UpvalueRef upvalue = state.upvalues.get(i);
+            if (upvalue.index == index && upvalue.isLocal == isLocal) {
+                return i;
+            }
+        }
+        if (state.upvalues.size() == MAX_UPVALUES) {
+            error(name, "Too many closure variables in function.");
+            return 0;
+        }
+        state.upvalues.add(new UpvalueRef(index, isLocal));
+        return state.upvalues.size() - 1;
+    }
+    //endregion
+
+    //region emit part
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void emit(int value) {
+        current.chunk.write(value, token);
+    }
+
+    private void emitWithShort(int op, int operand) {
+        emit(op);
+        emit(operand >> 8);
+        emit(operand);
+    }
+
+    private void emitReturn() {
+        if (current.type == FunctionType.INITIALIZER) {
+            emit(OpCode.GET_LOCAL);
+            emit(0);
+        } else {
+            emit(OpCode.NIL);
+        }
+        emit(OpCode.RETURN);
+    }
+
+    private int emitJump(int op) {
+        emitWithShort(op, 0xffff);
+        return current.chunk.count() - 2;
+    }
+
+    private void patchJump(int offset) {
+        int jump = current.chunk.count() - offset - 2;
+        if (jump > MAX_SHORT) {
+            error(token, "Too much code to jump over.");
+        }
+        current.chunk.patch(offset, jump >> 8);
+        current.chunk.patch(offset + 1, jump);
+    }
+
+    private void emitLoop(int loopStart) {
+        int offset = current.chunk.count() - loopStart + 3;
+        if (offset > MAX_SHORT) {
+            error(token, "Loop body too large.");
+        }
+        emitWithShort(OpCode.LOOP, offset);
+    }
+
+    private int constant(Object value) {
+        int index = current.chunk.addConstant(value);
+        if (index > MAX_SHORT) {
+            error(token, "Too many constants in one chunk.");
+            return 0;
+        }
+        return index;
+    }
+
+    private void error(Token token, String message) {
+        reporter.error(token, message);
+    }
+    //endregion
+}
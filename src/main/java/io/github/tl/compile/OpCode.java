@@ -0,0 +1,58 @@
+package main.java.io.github.tl.compile;
+
+// Operands follow the opcode in code array, "u8" is one byte and "u16" is two bytes in big endian
+public final class OpCode {
+    public static final byte CONSTANT = 0;          // u16 constant index
+    public static final byte NIL = 1;
+    public static final byte TRUE = 2;
+    public static final byte FALSE = 3;
+    public static final byte POP = 4;
+
+    public static final byte GET_LOCAL = 5;         // u8 stack slot
+    public static final byte SET_LOCAL = 6;         // u8 stack slot
+    public static final byte GET_UPVALUE = 7;       // u8 upvalue index
+    public static final byte SET_UPVALUE = 8;       // u8 upvalue index
+    public static final byte GET_GLOBAL = 9;        // u16 name constant
+    public static final byte DEFINE_GLOBAL = 10;    // u16 name constant
+    public static final byte SET_GLOBAL = 11;       // u16 name constant
+    public static final byte GET_PROPERTY = 12;     // u16 name constant
+    public static final byte SET_PROPERTY = 13;     // u16 name constant
+    public static final byte GET_SUPER = 14;        // u16 name constant
+
+    public static final byte EQUAL = 15;
+    public static final byte NOT_EQUAL = 16;
+    public static final byte GREATER = 17;
+    public static final byte GREATER_EQUAL = 18;
+    public static final byte LESS = 19;
+    public static final byte LESS_EQUAL = 20;
+    public static final byte ADD = 21;
+    public static final byte SUBTRACT = 22;
+    public static final byte MULTIPLY = 23;
+    public static final byte DIVIDE = 24;
+    public static final byte NOT = 25;
+    public static final byte NEGATE = 26;
+    public static final byte CHECK_NUMBER = 27;
+
+    public static final byte PRINT = 28;
+    public static final byte JUMP = 29;             // u16 forward offset
+    public static final byte JUMP_IF_FALSE = 30;    // u16 forward offset
+    public static final byte LOOP = 31;             // u16 backward offset
+    public static final byte CALL = 32;             // u8 argument count
+    public static final byte CLOSURE = 33;          // u16 prototype constant, then (u8 isLocal, u8 index) per upvalue
+    public static final byte CLOSE_UPVALUE = 34;
+    public static final byte RETURN = 35;
+
+    public static final byte CLASS = 36;            // u16 name constant
+    public static final byte INHERIT = 37;
+    public static final byte METHOD = 38;           // u16 name constant
+
+    public static final byte GET_INDEX = 39;
+    public static final byte SET_INDEX = 40;
+
+    public static final byte TAIL_CALL = 41;        // u8 argument count, always followed by RETURN
+
+    public static final byte CHECK_INSTANCE = 42;   // before the value of SET_PROPERTY is evaluated
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,33 @@
+package main.java.io.github.tl.compile;
+
+import main.java.io.github.tl.scan.Token;
+
+// Compiled form of a function, shared by every closure created from it
+public class Prototype {
+    public final String name;
+    public final int arity;
+    public final int upvalueCount;
+    public final byte[] code;
+    public final Object[] constants;
+
+    private final Chunk chunk;
+
+    Prototype(String name, int arity, int upvalueCount, Chunk chunk) {
+        chunk.seal();
+        this.name = name;
+        this.arity = arity;
+        this.upvalueCount = upvalueCount;
+        this.code = chunk.code();
+        this.constants = chunk.constants();
+        this.chunk = chunk;
+    }
+
+    public Token tokenAt(int offset) {
+        return chunk.tokenAt(offset);
+    }
+
+    @Override
+    public String toString() {
+        return name == null ? "<script>" : "<fn " + name + ">";
+    }
+}
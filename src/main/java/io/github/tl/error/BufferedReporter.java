@@ -0,0 +1,30 @@
+package main.java.io.github.tl.error;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Hold the errors of a compile done on another thread, until they can be reported in order
+public class BufferedReporter extends ErrorReporter {
+    private final List<String> messages = new ArrayList<>();
+
+    private final List<Integer> lines = new ArrayList<>();
+
+    public BufferedReporter() {
+        super(new PrintWriter(Writer.nullWriter()));
+    }
+
+    @Override
+    protected void report(String message, int line) {
+        messages.add(message);
+        lines.add(line);
+    }
+
+    // Report every error held to the given reporter, as if it had them in the first place
+    public void replay(ErrorReporter reporter) {
+        for (int i = 0; i < messages.size(); i++) {
+            reporter.staticError(messages.get(i), lines.get(i));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package main.java.io.github.tl.error;
+
+import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.scan.TokenType;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// Sink of errors for one isolate, remembers whether any happened
+public class ErrorReporter {
+    private final PrintWriter err;
+
+    // Output of scripts, flushed before each error so both come out in order
+    private final Flushable out;
+
+    private boolean hadError = false;
+
+    private boolean hadRuntimeError = false;
+
+    public ErrorReporter(PrintWriter err) {
+        this(err, null);
+    }
+
+    public ErrorReporter(PrintWriter err, Flushable out) {
+        this.err = err;
+        this.out = out;
+    }
+
+    // Error from scanner
+    public void error(int line, String message) {
+        staticError("Line " + line + ": " + message, line);
+    }
+
+    // Error from parser
+    public void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            staticError(token.line + " at end" + message, token.line);
+        } else {
+            staticError(token.line + " at '" + token.lexeme + "'" + message, token.line);
+        }
+    }
+
+    // Any error found before running, already formatted
+    void staticError(String message, int line) {
+        hadError = true;
+        report(message, line);
+    }
+
+    // Error from interpreter
+    public void runtimeError(RuntimeError error) {
+        hadRuntimeError = true;
+        report(error.getMessage() +
+                "\n[line " + error.token.line + "]", error.token.line);
+    }
+
+    // Print every error, embedders may keep them instead
+    protected void report(String message, int line) {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // Error is reported anyway
+            }
+        }
+        err.println(message);
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public void reset() {
+        hadError = false;
+        hadRuntimeError = false;
+    }
+}
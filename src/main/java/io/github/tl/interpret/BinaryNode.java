@@ -0,0 +1,305 @@
+package main.java.io.github.tl.interpret;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.error.RuntimeError;
+import main.java.io.github.tl.lib.Rope;
+import main.java.io.github.tl.scan.TokenType;
+
+// Execution of a binary expression, specialized on the operand types seen so far.
+// Every Expr.Binary starts uninitialized and rewrites itself on the first evaluation.
+// A specialized node whose guess fails falls back to the generic node for good.
+public abstract class BinaryNode {
+    public static final BinaryNode UNINITIALIZED = new Uninitialized();
+
+    abstract Object execute(Interpreter interpreter, Expr.Binary expr, Object left, Object right);
+
+    // Evaluate both operands and execute, nodes specialized on numbers don't box them
+    Object evaluate(Interpreter interpreter, Expr.Binary expr) {
+        Object left = interpreter.evaluate(expr.left);
+        Object right = interpreter.evaluate(expr.right);
+        return execute(interpreter, expr, left, right);
+    }
+
+    // Result as a number, throws NotNumber with the result when it is something else
+    double evaluateNumber(Interpreter interpreter, Expr.Binary expr) {
+        return number(evaluate(interpreter, expr));
+    }
+
+    // Whether the result is expected to be a number, so it is worth storing unboxed
+    boolean isNumeric() {
+        return false;
+    }
+
+    static double number(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        throw new NotNumber(value);
+    }
+
+    // Take the generic path from now on
+    static Object rewriteToGeneric(Interpreter interpreter, Expr.Binary expr, Object left, Object right) {
+        expr.node = Generic.INSTANCE;
+        return Generic.INSTANCE.execute(interpreter, expr, left, right);
+    }
+
+    private static class Uninitialized extends BinaryNode {
+        @Override
+        Object execute(Interpreter interpreter, Expr.Binary expr, Object left, Object right) {
+            BinaryNode node = specialize(expr, left, right);
+            expr.node = node;
+            return node.execute(interpreter, expr, left, right);
+        }
+
+        private static BinaryNode specialize(Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) {
+                switch (expr.operator.type) {
+                    case PLUS: return DoubleAdd.INSTANCE;
+                    case MINUS: return DoubleSubtract.INSTANCE;
+                    case STAR: return DoubleMultiply.INSTANCE;
+                    case SLASH: return DoubleDivide.INSTANCE;
+                    case LESS: return DoubleLess.INSTANCE;
+                    case LESS_EQUAL: return DoubleLessEqual.INSTANCE;
+                    case GREATER: return DoubleGreater.INSTANCE;
+                    case GREATER_EQUAL: return DoubleGreaterEqual.INSTANCE;
+                }
+            }
+            if (Rope.isString(left) && Rope.isString(right) && expr.operator.type == TokenType.PLUS) {
+                return StringConcat.INSTANCE;
+            }
+            return Generic.INSTANCE;
+        }
+    }
+
+    //region specialized nodes
+    // Both operands guessed to be numbers, read unboxed from the variables and nodes producing them
+    private abstract static class Arithmetic extends BinaryNode {
+        abstract double apply(double left, double right);
+
+        // Right operand the operator can't take, left to the generic node to report
+        boolean rejects(double right) {
+            return false;
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+
+        @Override
+        Object execute(Interpreter interpreter, Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double && !rejects((double) right)) {
+                return apply((double) left, (double) right);
+            }
+            return rewriteToGeneric(interpreter, expr, left, right);
+        }
+
+        @Override
+        Object evaluate(Interpreter interpreter, Expr.Binary expr) {
+            try {
+                return evaluateNumber(interpreter, expr);
+            } catch (NotNumber e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        double evaluateNumber(Interpreter interpreter, Expr.Binary expr) {
+            double left;
+            try {
+                left = interpreter.evaluateNumber(expr.left);
+            } catch (NotNumber e) {
+                return number(rewriteToGeneric(interpreter, expr, e.value, interpreter.evaluate(expr.right)));
+            }
+            double right;
+            try {
+                right = interpreter.evaluateNumber(expr.right);
+            } catch (NotNumber e) {
+                return number(rewriteToGeneric(interpreter, expr, left, e.value));
+            }
+            if (rejects(right)) {
+                return number(rewriteToGeneric(interpreter, expr, left, right));
+            }
+            return apply(left, right);
+        }
+    }
+
+    private static class DoubleAdd extends Arithmetic {
+        static final DoubleAdd INSTANCE = new DoubleAdd();
+
+        @Override
+        double apply(double left, double right) {
+            return left + right;
+        }
+    }
+
+    private static class DoubleSubtract extends Arithmetic {
+        static final DoubleSubtract INSTANCE = new DoubleSubtract();
+
+        @Override
+        double apply(double left, double right) {
+            return left - right;
+        }
+    }
+
+    private static class DoubleMultiply extends Arithmetic {
+        static final DoubleMultiply INSTANCE = new DoubleMultiply();
+
+        @Override
+        double apply(double left, double right) {
+            return left * right;
+        }
+    }
+
+    private static class DoubleDivide extends Arithmetic {
+        static final DoubleDivide INSTANCE = new DoubleDivide();
+
+        @Override
+        double apply(double left, double right) {
+            return left / right;
+        }
+
+        // Division by zero is reported by generic node
+        @Override
+        boolean rejects(double right) {
+            return right == 0;
+        }
+    }
+
+    // Same guess as arithmetic, the result is a boolean
+    private abstract static class Comparison extends BinaryNode {
+        abstract boolean compare(double left, double right);
+
+        @Override
+        Object execute(Interpreter interpreter, Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) {
+                return compare((double) left, (double) right);
+            }
+            return rewriteToGeneric(interpreter, expr, left, right);
+        }
+
+        @Override
+        Object evaluate(Interpreter interpreter, Expr.Binary expr) {
+            double left;
+            try {
+                left = interpreter.evaluateNumber(expr.left);
+            } catch (NotNumber e) {
+                return rewriteToGeneric(interpreter, expr, e.value, interpreter.evaluate(expr.right));
+            }
+            double right;
+            try {
+                right = interpreter.evaluateNumber(expr.right);
+            } catch (NotNumber e) {
+                return rewriteToGeneric(interpreter, expr, left, e.value);
+            }
+            return compare(left, right);
+        }
+    }
+
+    private static class DoubleLess extends Comparison {
+        static final DoubleLess INSTANCE = new DoubleLess();
+
+        @Override
+        boolean compare(double left, double right) {
+            return left < right;
+        }
+    }
+
+    private static class DoubleLessEqual extends Comparison {
+        static final DoubleLessEqual INSTANCE = new DoubleLessEqual();
+
+        @Override
+        boolean compare(double left, double right) {
+            return left <= right;
+        }
+    }
+
+    private static class DoubleGreater extends Comparison {
+        static final DoubleGreater INSTANCE = new DoubleGreater();
+
+        @Override
+        boolean compare(double left, double right) {
+            return left > right;
+        }
+    }
+
+    private static class DoubleGreaterEqual extends Comparison {
+        static final DoubleGreaterEqual INSTANCE = new DoubleGreaterEqual();
+
+        @Override
+        boolean compare(double left, double right) {
+            return left >= right;
+        }
+    }
+
+    private static class StringConcat extends BinaryNode {
+        static final StringConcat INSTANCE = new StringConcat();
+
+        @Override
+        Object execute(Interpreter interpreter, Expr.Binary expr, Object left, Object right) {
+            if (Rope.isString(left) && Rope.isString(right)) {
+                return Rope.concat(left, right);
+            }
+            return rewriteToGeneric(interpreter, expr, left, right);
+        }
+    }
+    //endregion
+
+    // Check operand types on every evaluation
+    private static class Generic extends BinaryNode {
+        static final Generic INSTANCE = new Generic();
+
+        @Override
+        Object execute(Interpreter interpreter, Expr.Binary expr, Object left, Object right) {
+            switch (expr.operator.type) {
+                case BANG_EQUAL: return !Interpreter.isEqual(left, right);
+                case EQUAL_EQUAL: return Interpreter.isEqual(left, right);
+                case GREATER:
+                    checkNumberOperands(expr, left, right);
+                    return (double)left > (double)right;
+                case GREATER_EQUAL:
+                    checkNumberOperands(expr, left, right);
+                    return (double)left >= (double)right;
+                case LESS:
+                    checkNumberOperands(expr, left, right);
+                    return (double)left < (double)right;
+                case LESS_EQUAL:
+                    checkNumberOperands(expr, left, right);
+                    return (double)left <= (double)right;
+                case PLUS:
+                    if (left instanceof Double && right instanceof Double) {
+                        return (double)left + (double)right;
+                    }
+
+                    // Strings, or a string and a number written as print does
+                    if (Rope.isString(left) && (Rope.isString(right) || right instanceof Double)
+                            || left instanceof Double && Rope.isString(right)) {
+                        return Rope.concat(left, right);
+                    }
+
+                    break;
+                case MINUS:
+                    checkNumberOperands(expr, left, right);
+                    return (double)left - (double)right;
+                case SLASH:
+                    checkNumberOperands(expr, left, right);
+                    if ((double) right != 0) {
+                        return (double)left / (double)right;
+                    } else {
+                        throw new RuntimeError(expr.operator, "The divisor must not be zero.");
+                    }
+                case STAR:
+                    checkNumberOperands(expr, left, right);
+                    return (double)left * (double)right;
+            }
+
+            // Unreachable.
+            return null;
+        }
+
+        private static void checkNumberOperands(Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return;
+            throw new RuntimeError(expr.operator, "Operands must be numbers.");
+        }
+    }
+}
@@ -1,54 +1,211 @@
 package main.java.io.github.tl.interpret;
 
 import main.java.io.github.tl.error.RuntimeError;
+import main.java.io.github.tl.lib.NativeRegistry;
+import main.java.io.github.tl.lib.Rope;
 import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.symbol.Symbol;
 
 import java.util.HashMap;
 import java.util.Map;
 
-public class Environment implements Cloneable {
+public class Environment {
+    // Marks a variable holding a number, kept unboxed in numbers at the same index
+    private static final Object NUMBER = new Object();
+
     public Environment enclosing;
-    private Map<String, Object> values = new HashMap<>();
+    // Only the global environment is keyed by name, through the ids of symbols.
+    // Open addressing over the ids of globals defined, so its size follows them and not every name interned
+    // by the process. Values sit in globals at the index of their id.
+    private int[] ids;      // Id plus one, 0 for a free entry
+    private Object[] globals;
+    private int globalCount = 0;
+    // Or by the names themselves, when backed by a map of embedder
+    private Map<String, Object> values;
+    // Natives looked up behind the map of embedder, so they don't show up among its bindings
+    private Map<String, Object> natives;
+    // Local environments are indexed by the slots assigned in resolver
+    private Object[] slots;
+    // Numbers of globals or slots, only made when the first one is stored
+    private double[] numbers;
 
     public Environment() {
-        enclosing = null;
+        this.enclosing = null;
+        this.ids = new int[16];
+        this.globals = new Object[16];
+    }
+
+    // Global environment over the given map, like bindings of an embedder
+    public Environment(Map<String, Object> values) {
+        this.enclosing = null;
+        this.values = values;
     }
 
-    public Environment(Environment enclosing) {
+    public Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        this.slots = new Object[size];
     }
 
     public void define(String name, Object value) {
-        values.put(name, value);
+        define(Symbol.of(name), value);
     }
 
-    public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+    // Every native of the registry, as globals
+    public void define(NativeRegistry natives) {
+        if (values != null) {
+            if (this.natives == null) {
+                this.natives = new HashMap<>();
+            }
+            this.natives.putAll(natives.values());
             return;
         }
-        if (enclosing != null) {
-            enclosing.assign(name, value);
+        natives.values().forEach(this::define);
+    }
+
+    public void define(Symbol name, Object value) {
+        if (values != null) {
+            // Map of embedder is read by Java, which gets strings and not ropes
+            values.put(name.name, Rope.flatten(value));
+            return;
+        }
+        int index = indexOf(name.id);
+        if (index < 0) {
+            // Keep the table at most half full
+            if ((globalCount + 1) * 2 > ids.length) {
+                rehash(ids.length * 2);
+            }
+            index = insert(name.id);
+            globalCount++;
+        }
+        globals[index] = value;
+    }
+
+    // Index of the global, -1 if it was never defined
+    private int indexOf(int id) {
+        int mask = ids.length - 1;
+        for (int i = id & mask; ids[i] != 0; i = (i + 1) & mask) {
+            if (ids[i] == id + 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(int id) {
+        int mask = ids.length - 1;
+        int i = id & mask;
+        while (ids[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id + 1;
+        return i;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldIds = ids;
+        Object[] oldGlobals = globals;
+        double[] oldNumbers = numbers;
+        ids = new int[capacity];
+        globals = new Object[capacity];
+        numbers = oldNumbers == null ? null : new double[capacity];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != 0) {
+                int index = insert(oldIds[i] - 1);
+                globals[index] = oldGlobals[i];
+                if (oldNumbers != null) {
+                    numbers[index] = oldNumbers[i];
+                }
+            }
+        }
+    }
+
+    public void define(int slot, Object value) {
+        slots[slot] = value;
+    }
+
+    public void assign(Token name, Object value) {
+        if (values == null) {
+            int index = indexOf(name.symbol.id);
+            if (index >= 0) {
+                globals[index] = value;
+                return;
+            }
+        } else if (values.containsKey(name.lexeme) || natives != null && natives.containsKey(name.lexeme)) {
+            // Assigning a native defines a global of script in its place
+            values.put(name.lexeme, Rope.flatten(value));
             return;
         }
 
         throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
     }
 
-    Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+    public void assignNumber(Token name, double value) {
+        if (values == null) {
+            int index = indexOf(name.symbol.id);
+            if (index >= 0) {
+                if (numbers == null) {
+                    numbers = new double[globals.length];
+                }
+                globals[index] = NUMBER;
+                numbers[index] = value;
+                return;
+            }
         }
+        assign(name, value);
+    }
 
-        if (enclosing != null) {
-            return enclosing.get(name);
+    public Object get(Token name) {
+        if (values == null) {
+            int index = indexOf(name.symbol.id);
+            if (index >= 0) {
+                Object value = globals[index];
+                return value == NUMBER ? (Object) numbers[index] : value;
+            }
+        } else {
+            Object value = values.get(name.lexeme);
+            if (value != null || values.containsKey(name.lexeme)) {
+                return value;
+            }
+            if (natives != null && natives.containsKey(name.lexeme)) {
+                return natives.get(name.lexeme);
+            }
         }
 
         throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
     }
 
-    public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    // Throws NotNumber with the value when it is not a number
+    public double getNumber(Token name) {
+        if (values == null) {
+            int index = indexOf(name.symbol.id);
+            if (index >= 0 && globals[index] == NUMBER) {
+                return numbers[index];
+            }
+        }
+        return number(get(name));
+    }
+
+    public Object getAt(int distance, int slot) {
+        Environment environment = ancestor(distance);
+        Object value = environment.slots[slot];
+        return value == NUMBER ? (Object) environment.numbers[slot] : value;
+    }
+
+    // Throws NotNumber with the value when it is not a number
+    public double getNumberAt(int distance, int slot) {
+        Environment environment = ancestor(distance);
+        Object value = environment.slots[slot];
+        if (value == NUMBER) {
+            return environment.numbers[slot];
+        }
+        return number(value);
+    }
+
+    private static double number(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        throw new NotNumber(value);
     }
 
     Environment ancestor(int distance) {
@@ -60,19 +217,16 @@ public class Environment implements Cloneable {
         return environment;
     }
 
-    void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    public void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
     }
 
-    @Override
-    public Object clone() {
-        Environment dup = null;
-        try {
-            dup = (Environment) super.clone();
-            dup.values = new HashMap<>(this.values);
-        } catch (CloneNotSupportedException e) {
-            e.printStackTrace();
+    public void assignNumberAt(int distance, int slot, double value) {
+        Environment environment = ancestor(distance);
+        if (environment.numbers == null) {
+            environment.numbers = new double[environment.slots.length];
         }
-        return dup;
+        environment.slots[slot] = NUMBER;
+        environment.numbers[slot] = value;
     }
 }
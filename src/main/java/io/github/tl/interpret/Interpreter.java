@@ -1,45 +1,138 @@
 package main.java.io.github.tl.interpret;
 
-import main.java.io.github.tl.TinyLanguage;
-import main.java.io.github.tl.error.ReturnError;
+import main.java.io.github.tl.error.ErrorReporter;
 import main.java.io.github.tl.error.RuntimeError;
 import main.java.io.github.tl.ast.Expr;
 import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.lib.Indexing;
+import main.java.io.github.tl.lib.NativeError;
+import main.java.io.github.tl.lib.NativeFunction;
+import main.java.io.github.tl.lib.NativeObject;
+import main.java.io.github.tl.lib.NativeRegistry;
+import main.java.io.github.tl.lib.Rope;
+import main.java.io.github.tl.lib.StandardLibrary;
+import main.java.io.github.tl.lib.TinyArray;
+import main.java.io.github.tl.profile.Profiler;
 import main.java.io.github.tl.resolver.Callable;
 import main.java.io.github.tl.resolver.Function;
 import main.java.io.github.tl.resolver.Instance;
 import main.java.io.github.tl.resolver.Klass;
+import main.java.io.github.tl.resolver.Shape;
 import main.java.io.github.tl.scan.Token;
 import main.java.io.github.tl.scan.TokenType;
+import main.java.io.github.tl.symbol.Symbol;
+import main.java.io.github.tl.symbol.SymbolMap;
 
+import java.io.BufferedReader;
+import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    public Environment globals = new Environment();
-    private Environment environment = globals;
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
+    // Result of statement which completes without return, anything else is the returned value
+    public static final Object NORMAL = new Object();
 
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    public final Environment globals;
+    private Environment environment;
+    // Call stack of script for sampling, only kept when profiling
+    public Profiler profiler = null;
+
+    private final ErrorReporter reporter;
+
+    private final PrintWriter out;
+
+    public Interpreter(ErrorReporter reporter, PrintWriter out) {
+        this(reporter, out, new Environment());
+    }
+
+    public Interpreter(ErrorReporter reporter, PrintWriter out, Environment globals) {
+        this.reporter = reporter;
+        this.out = out;
+        this.globals = globals;
+        this.environment = globals;
+        globals.define(NativeRegistry.standard());
+        input(StandardLibrary.standardInput());
+    }
+
+    // Lines read by readLine, which flushes the output of this interpreter before waiting
+    public void input(BufferedReader input) {
+        globals.define(new NativeRegistry().define(StandardLibrary.readLine(input, out)));
+    }
 
     //region interpreter logic
-    private Object evaluate(Expr expression) {
+    Object evaluate(Expr expression) {
         return expression.accept(this);
     }
 
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    // Value of an expression read as a number without boxing, throws NotNumber with the value when it is something else
+    double evaluateNumber(Expr expression) {
+        if (expression instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable) expression;
+            if (variable.depth != -1) {
+                return environment.getNumberAt(variable.depth, variable.slot);
+            }
+            return globals.getNumber(variable.name);
+        }
+        if (expression instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expression;
+            return binary.node.evaluateNumber(this, binary);
+        }
+        if (expression instanceof Expr.Unary && ((Expr.Unary) expression).operator.type == TokenType.MINUS) {
+            return negate((Expr.Unary) expression);
+        }
+        if (expression instanceof Expr.Index) {
+            return indexNumber((Expr.Index) expression);
+        }
+        if (expression instanceof Expr.Get) {
+            // Length of array as loop bound
+            Expr.Get get = (Expr.Get) expression;
+            Object object = evaluate(get.object);
+            if (object instanceof TinyArray && get.name.symbol == TinyArray.LENGTH) {
+                return ((TinyArray) object).length();
+            }
+            return BinaryNode.number(getProperty(get, object));
+        }
+        return BinaryNode.number(evaluate(expression));
     }
 
-    public void executeBlock(List<Stmt> statements, Environment environment) {
+    private Object execute(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    // Entry of compiled code back into the interpreter
+    public Object evaluate(Expr expression, Environment environment) {
         Environment previous = this.environment;
         try {
             this.environment = environment;
+            return evaluate(expression);
+        } finally {
+            this.environment = previous;
+        }
+    }
 
-            for (Stmt statement : statements) {
-                execute(statement);
+    public Object execute(Stmt stmt, Environment environment) {
+        Environment previous = this.environment;
+        try {
+            this.environment = environment;
+            return execute(stmt);
+        } finally {
+            this.environment = previous;
+        }
+    }
+
+    public Object executeBlock(List<Stmt> statements, Environment environment) {
+        Environment previous = this.environment;
+        try {
+            this.environment = environment;
+
+            // By index, an iterator for every run of a loop body adds up
+            for (int i = 0; i < statements.size(); i++) {
+                Object result = execute(statements.get(i));
+                if (result != NORMAL) {
+                    return result;
+                }
             }
+            return NORMAL;
         } finally {
             this.environment = previous;
         }
@@ -51,11 +144,15 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            TinyLanguage.runtimeError(error);
+            reporter.runtimeError(error);
         }
     }
 
-    private String stringify(Object object) {
+    public void print(Object value) {
+        out.println(stringify(value));
+    }
+
+    public static String stringify(Object object) {
         if (object == null) return "nil";
 
         if (object instanceof Double) {
@@ -74,81 +171,155 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
+        assign(expr, value);
+        return value;
+    }
+
+    private void assign(Expr.Assign expr, Object value) {
+        if (expr.depth != -1) {
+            environment.assignAt(expr.depth, expr.slot, value);
         } else {
             globals.assign(expr.name, value);
         }
-        return value;
+    }
+
+    // Assignment whose value is not used, a number goes to its variable without being boxed
+    private void assignDiscarded(Expr.Assign expr) {
+        if (!isNumeric(expr.value)) {
+            assign(expr, evaluate(expr.value));
+            return;
+        }
+        double value;
+        try {
+            value = evaluateNumber(expr.value);
+        } catch (NotNumber e) {
+            assign(expr, e.value);
+            return;
+        }
+        if (expr.depth != -1) {
+            environment.assignNumberAt(expr.depth, expr.slot, value);
+        } else {
+            globals.assignNumber(expr.name, value);
+        }
+    }
+
+    // Arithmetic which has only seen numbers so far, or a negation
+    private static boolean isNumeric(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            return ((Expr.Binary) expr).node.isNumeric();
+        }
+        return expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type == TokenType.MINUS;
     }
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
+        return expr.node.evaluate(this, expr);
+    }
 
-        switch (expr.operator.type) {
-            case BANG_EQUAL: return !isEqual(left, right);
-            case EQUAL_EQUAL: return isEqual(left, right);
-            case GREATER:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left > (double)right;
-            case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left >= (double)right;
-            case LESS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left < (double)right;
-            case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left <= (double)right;
-            case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double)left + (double)right;
-                }
+    @Override
+    public Object visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            return visitInvoke(expr, (Expr.Get) expr.callee);
+        }
+        Object callee = evaluate(expr.callee);
+        if (callee instanceof NativeFunction && expr.arguments.size() <= 3) {
+            return callNative(expr, (NativeFunction) callee);
+        }
 
-                if (left instanceof String && right instanceof String) {
-                    return left + (String)right;
-                }
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            arguments.add(evaluate(argument));
+        }
 
-                if (left instanceof String && right instanceof Double) {
-                    return left + stringify(right);
-                }
+        return call(expr, callee, arguments);
+    }
 
-                if (left instanceof Double && right instanceof String) {
-                    return stringify(left) + right;
-                }
+    // Native called with at most three arguments, passed one by one without a list
+    private Object callNative(Expr.Call expr, NativeFunction function) {
+        List<Expr> arguments = expr.arguments;
+        Object a = arguments.size() > 0 ? evaluate(arguments.get(0)) : null;
+        Object b = arguments.size() > 1 ? evaluate(arguments.get(1)) : null;
+        Object c = arguments.size() > 2 ? evaluate(arguments.get(2)) : null;
+        return callNative(expr, function, arguments.size(), a, b, c);
+    }
 
-                break;
-            case MINUS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left - (double)right;
-            case SLASH:
-                checkNumberOperands(expr.operator, left, right);
-                if ((double) right != 0) {
-                    return (double)left / (double)right;
-                } else {
-                    throw new RuntimeError(expr.operator, "The divisor must not be zero.");
-                }
-            case STAR:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left * (double)right;
+    public Object callNative(Expr.Call expr, NativeFunction function, int count, Object a, Object b, Object c) {
+        if (function.arity() != count) {
+            throw new RuntimeError(expr.paren,
+                    "Expected " +
+                    function.arity() + " arguments but got " +
+                    count + ".");
         }
 
-        // Unreachable.
-        return null;
+        // Functions called back by the native are called from its line
+        if (profiler != null) {
+            profiler.at(expr.paren);
+        }
+        try {
+            switch (count) {
+                case 0: return function.call0();
+                case 1: return function.call1(a);
+                case 2: return function.call2(a, b);
+                default: return function.call3(a, b, c);
+            }
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
     }
 
-    @Override
-    public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+    // Method call, skip binding when the property is a method
+    private Object visitInvoke(Expr.Call expr, Expr.Get get) {
+        Object object = evaluate(get.object);
+        Function method = findMethod(expr, get, object);
+        Object callee = method == null ? getProperty(get, object) : null;
+        if (callee instanceof NativeFunction && expr.arguments.size() <= 3) {
+            return callNative(expr, (NativeFunction) callee);
+        }
 
-        List<Object> arguments = new ArrayList<>();
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
 
+        if (method != null) {
+            return invoke(expr, method, (Instance) object, arguments);
+        }
+        return call(expr, callee, arguments);
+    }
+
+    // Method named by the property, null if it is not one
+    public Function findMethod(Expr.Call expr, Expr.Get get, Object object) {
+        if (!(object instanceof Instance)) {
+            return null;
+        }
+        Instance instance = (Instance)object;
+        if (fieldIndex(get, instance) != -1) {
+            return null;
+        }
+        if (expr.methods == null) {
+            expr.methods = new MethodCache();
+        }
+        return expr.methods.lookup(instance.klass, get.name.symbol);
+    }
+
+    public Object invoke(Expr.Call expr, Function method, Instance receiver, List<Object> arguments) {
+        if (method.arity() != arguments.size()) {
+            throw new RuntimeError(expr.paren,
+                    "Expected " +
+                    method.arity() + " arguments but got " +
+                    arguments.size() + ".");
+        }
+        if (profiler != null) {
+            profiler.at(expr.paren);
+        }
+        // Left for the loop of the caller to run, in place of its own frame
+        if (expr.tail) {
+            return method.tailCall(receiver, arguments);
+        }
+        return method.invoke(this, receiver, arguments);
+    }
+
+    public Object call(Expr.Call expr, Object callee, List<Object> arguments) {
         if (!(callee instanceof Callable)) {
             throw new RuntimeError(expr.paren, "Can only call functions and classes.");
         }
@@ -162,19 +333,55 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        if (profiler != null) {
+            profiler.at(expr.paren);
+        }
+        if (expr.tail && function instanceof Function) {
+            return ((Function) function).tailCall(arguments);
+        }
+
+        try {
+            return function.call(this, arguments);
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) {
-        Object object = evaluate(expr.object);
+        return getProperty(expr, evaluate(expr.object));
+    }
+
+    public Object getProperty(Expr.Get expr, Object object) {
         if (object instanceof Instance) {
-            return ((Instance)object).get(expr.name);
+            Instance instance = (Instance)object;
+            int index = fieldIndex(expr, instance);
+            if (index != -1) {
+                return instance.fields[index];
+            }
+            return instance.getMethod(expr.name);
+        }
+        if (object instanceof NativeObject) {
+            Object value = ((NativeObject) object).getProperty(expr.name.lexeme);
+            if (value != null) {
+                return value;
+            }
+            throw new RuntimeError(expr.name, "Undefined property '" + expr.name.lexeme + "'.");
         }
 
         throw new RuntimeError(expr.name, "Only instances have properties.");
     }
 
+    private int fieldIndex(Expr.Get expr, Instance instance) {
+        // Inline cache, the index holds as long as the shape is the same
+        PropertyCache cache = expr.cache;
+        if (cache == null || instance.shape != cache.shape) {
+            cache = new PropertyCache(instance.shape, null, instance.shape.indexOf(expr.name.symbol));
+            expr.cache = cache;
+        }
+        return cache.index;
+    }
+
     @Override
     public Object visitSetExpr(Expr.Set expr) {
         Object object = evaluate(expr.object);
@@ -182,10 +389,110 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             throw new RuntimeError(expr.name, "Only instances can set properties.");
         }
         Object value = evaluate(expr.value);
-        ((Instance)object).set(expr.name, value);
+        setProperty(expr, (Instance)object, value);
         return value;
     }
 
+    public void setProperty(Expr.Set expr, Instance object, Object value) {
+        // Inline cache, remember the transition as well when the field is new
+        PropertyCache cache = expr.cache;
+        if (cache == null || object.shape != cache.shape) {
+            int index = object.shape.indexOf(expr.name.symbol);
+            Shape next = null;
+            if (index == -1) {
+                next = object.shape.addField(expr.name.symbol);
+                index = next.size() - 1;
+            }
+            cache = new PropertyCache(object.shape, next, index);
+            expr.cache = cache;
+        }
+        if (cache.next != null) {
+            object.addField(cache.next);
+        }
+        object.fields[cache.index] = value;
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        return getIndex(expr.bracket, object, evaluate(expr.index));
+    }
+
+    // Element of an array read unboxed, throws NotNumber with the element when it is something else
+    private double indexNumber(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        if (!(object instanceof TinyArray)) {
+            return BinaryNode.number(getIndex(expr.bracket, object, evaluate(expr.index)));
+        }
+        TinyArray array = (TinyArray) object;
+        double index;
+        try {
+            index = evaluateNumber(expr.index);
+        } catch (NotNumber e) {
+            return BinaryNode.number(getIndex(expr.bracket, array, e.value));
+        }
+        return array.getNumber(checkIndex(expr.bracket, array, index));
+    }
+
+    @Override
+    public Object visitSetIndexExpr(Expr.SetIndex expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        Object value = evaluate(expr.value);
+        setIndex(expr.bracket, object, index, value);
+        return value;
+    }
+
+    // Store whose value is not used, a number goes into an array without being boxed
+    private void setIndexDiscarded(Expr.SetIndex expr) {
+        Object object = evaluate(expr.object);
+        if (!(object instanceof TinyArray) || !isNumeric(expr.value)) {
+            Object index = evaluate(expr.index);
+            setIndex(expr.bracket, object, index, evaluate(expr.value));
+            return;
+        }
+        TinyArray array = (TinyArray) object;
+        double index;
+        try {
+            index = evaluateNumber(expr.index);
+        } catch (NotNumber e) {
+            setIndex(expr.bracket, array, e.value, evaluate(expr.value));
+            return;
+        }
+        double value;
+        try {
+            value = evaluateNumber(expr.value);
+        } catch (NotNumber e) {
+            setIndex(expr.bracket, array, index, e.value);
+            return;
+        }
+        array.setNumber(checkIndex(expr.bracket, array, index), value);
+    }
+
+    public static Object getIndex(Token bracket, Object object, Object index) {
+        try {
+            return Indexing.get(object, index);
+        } catch (NativeError error) {
+            throw new RuntimeError(bracket, error.getMessage());
+        }
+    }
+
+    public static void setIndex(Token bracket, Object object, Object index, Object value) {
+        try {
+            Indexing.set(object, index, value);
+        } catch (NativeError error) {
+            throw new RuntimeError(bracket, error.getMessage());
+        }
+    }
+
+    public static int checkIndex(Token bracket, TinyArray array, double index) {
+        try {
+            return array.indexOf(index);
+        } catch (NativeError error) {
+            throw new RuntimeError(bracket, error.getMessage());
+        }
+    }
+
     @Override
     public Object visitLogicalExpr(Expr.Logical expr) {
         Object left = evaluate(expr.left);
@@ -213,16 +520,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        if (expr.depth != -1) {
+            return environment.getAt(expr.depth, 0);
+        }
+        // 'this' outside of class
+        return globals.get(expr.keyword);
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
-        Klass superclass = (Klass) environment.getAt(distance, "super");
+        int distance = expr.depth;
+        Klass superclass = (Klass) environment.getAt(distance, 0);
 
-        Instance object = (Instance) environment.getAt(distance - 1, "this");
-        Function method = superclass.findMethod(expr.method.lexeme);
+        Instance object = (Instance) environment.getAt(distance - 1, 0);
+        Function method = superclass.findMethod(expr.method.symbol);
 
         if (method == null) {
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
@@ -232,19 +543,24 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
-
         switch (expr.operator.type) {
             case BANG:
-                return !isTruthy(right);
+                return !isTruthy(evaluate(expr.right));
             case MINUS:
-                checkNumberOperand(expr.operator, right);
-                return -(double)right;
+                return negate(expr);
         }
 
         return null;
     }
 
+    private double negate(Expr.Unary expr) {
+        try {
+            return -evaluateNumber(expr.right);
+        } catch (NotNumber e) {
+            throw new RuntimeError(expr.operator, "Operand must be a number.");
+        }
+    }
+
     @Override
     public Object visitTernaryExpr(Expr.Ternary expr) {
         Object condition = evaluate(expr.condition);
@@ -261,57 +577,64 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name, expr);
-    }
-
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
+        if (expr.depth != -1) {
+            return environment.getAt(expr.depth, expr.slot);
         } else {
-            return globals.get(name);
+            return globals.get(expr.name);
         }
     }
 
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Object visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
-        return null;
+        return NORMAL;
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
+    public Object visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.body);
+            Object result = execute(stmt.body);
+            if (result != NORMAL) {
+                return result;
+            }
         }
-        return null;
+        return NORMAL;
     }
 
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    public Object visitBlockStmt(Stmt.Block stmt) {
+        // Block declaring nothing runs in the enclosing environment
+        if (stmt.locals < 0) {
+            return executeBlock(stmt.statements, environment);
+        }
+        return executeBlock(stmt.statements, new Environment(environment, stmt.locals));
     }
 
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
-        evaluate(stmt.expression);
-        return null;
+    public Object visitExpressionStmt(Stmt.Expression stmt) {
+        if (stmt.expression instanceof Expr.Assign) {
+            assignDiscarded((Expr.Assign) stmt.expression);
+        } else if (stmt.expression instanceof Expr.SetIndex) {
+            setIndexDiscarded((Expr.SetIndex) stmt.expression);
+        } else {
+            evaluate(stmt.expression);
+        }
+        return NORMAL;
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
+    public Object visitFunctionStmt(Stmt.Function stmt) {
         Function function = new Function(stmt, environment, false);
-        environment.define(stmt.name.lexeme, function);
-        return null;
+        define(stmt.slot, stmt.name, function);
+        return NORMAL;
     }
 
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
+    public Object visitClassStmt(Stmt.Class stmt) {
         Object superclass = null;
         if (stmt.superclass != null) {
             superclass = evaluate(stmt.superclass);
@@ -319,56 +642,56 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
             }
         }
-        environment.define(stmt.name.lexeme, null);
+        define(stmt.slot, stmt.name, null);
 
         if (stmt.superclass != null) {
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            environment = new Environment(environment, 1);
+            environment.define(0, superclass);
         }
 
-        Map<String, Function> methods = new HashMap<>();
+        SymbolMap<Function> methods = new SymbolMap<>();
         for (Stmt.Function method : stmt.methods) {
-            Function function = new Function(method, environment, method.name.lexeme.equals("init"));
-            methods.put(method.name.lexeme, function);
+            Function function = new Function(method, environment, method.name.symbol == Symbol.INIT);
+            methods.put(method.name.symbol, function);
         }
-        Klass klass = new Klass(stmt.name.lexeme, (Klass) superclass, methods);
+        Klass klass = new Klass(stmt.name, (Klass) superclass, methods, stmt.shape);
         if (superclass != null) {
             environment = environment.enclosing;
         }
-        environment.assign(stmt.name, klass);
-        return null;
+        define(stmt.slot, stmt.name, klass);
+        return NORMAL;
     }
 
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Object visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
-        return null;
+        print(value);
+        return NORMAL;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Object visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
-        throw new ReturnError(value);
+        return value;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Object visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
 
-        environment.define(stmt.name.lexeme, value);
-        return null;
+        define(stmt.slot, stmt.name, value);
+        return NORMAL;
     }
     //endregion
 
     //region utils part
     // Convert literal to boolean value
-    private boolean isTruthy(Object object) {
+    public static boolean isTruthy(Object object) {
         if (object == null) {
             return false;
         }
@@ -381,10 +704,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return true;
     }
 
-    private boolean isEqual(Object left, Object right) {
+    public static boolean isEqual(Object left, Object right) {
         if (left == null && right == null) return true;
         if (left == null) return false;
 
+        // Ropes equal strings and each other by their characters
+        if (left instanceof Rope || right instanceof Rope) {
+            return Rope.flatten(left).equals(Rope.flatten(right));
+        }
         return left.equals(right);
     }
 
@@ -393,13 +720,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
-    private void checkNumberOperands(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
-        throw new RuntimeError(operator, "Operands must be numbers.");
-    }
-
-    public void resolve(Expr expr, int distance) {
-        locals.put(expr, distance);
+    // Declarations without a slot live in global scope
+    private void define(int slot, Token name, Object value) {
+        if (slot != -1) {
+            environment.define(slot, value);
+        } else {
+            globals.define(name.symbol, value);
+        }
     }
     //endregion
 }
@@ -0,0 +1,43 @@
+package main.java.io.github.tl.interpret;
+
+import main.java.io.github.tl.resolver.Function;
+import main.java.io.github.tl.resolver.Klass;
+import main.java.io.github.tl.symbol.Symbol;
+
+import java.util.Arrays;
+
+// Polymorphic inline cache of a method call site, from the class of receiver to the method.
+// Once more classes than it can hold show up, the site is megamorphic and looks up the table every time.
+public class MethodCache {
+    private static final int SIZE = 4;
+
+    private static class Entry {
+        final Klass klass;
+        final Function method;
+
+        Entry(Klass klass, Function method) {
+            this.klass = klass;
+            this.method = method;
+        }
+    }
+
+    // Copied on write, call sites are shared by isolates running on other threads
+    private volatile Entry[] entries = new Entry[0];
+
+    public Function lookup(Klass klass, Symbol name) {
+        Entry[] entries = this.entries;
+        for (Entry entry : entries) {
+            if (entry.klass == klass) {
+                return entry.method;
+            }
+        }
+
+        Function method = klass.findMethod(name);
+        if (method != null && entries.length < SIZE) {
+            Entry[] grown = Arrays.copyOf(entries, entries.length + 1);
+            grown[entries.length] = new Entry(klass, method);
+            this.entries = grown;
+        }
+        return method;
+    }
+}
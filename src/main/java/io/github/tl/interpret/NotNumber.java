@@ -0,0 +1,12 @@
+package main.java.io.github.tl.interpret;
+
+// Thrown where a value was read as an unboxed number but turned out to be something else.
+// Carries the value, so the caller goes on with it on the generic path. No stack trace, it is not an error.
+public class NotNumber extends RuntimeException {
+    public final Object value;
+
+    public NotNumber(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
@@ -0,0 +1,20 @@
+package main.java.io.github.tl.interpret;
+
+import main.java.io.github.tl.resolver.Shape;
+
+// Inline cache of a property access, valid for instances of the cached shape.
+// Replaced as a whole on a miss, so threads sharing the tree never see a shape with the index of another.
+public class PropertyCache {
+    final Shape shape;
+
+    // Shape after a set adds the field, null when the field exists already
+    final Shape next;
+
+    final int index;
+
+    PropertyCache(Shape shape, Shape next, int index) {
+        this.shape = shape;
+        this.next = next;
+        this.index = index;
+    }
+}
@@ -0,0 +1,24 @@
+package main.java.io.github.tl.jit;
+
+import main.java.io.github.tl.interpret.Environment;
+import main.java.io.github.tl.interpret.Interpreter;
+
+// Body of a hot function compiled into a tree of specialized nodes.
+// Shared by every closure of the same declaration, on any isolate and thread running the script.
+// The only state in the tree is speculation flags, like a store found to be not a number, which turn
+// one way from guessing to generic. One isolate turning a flag slows the others, but never changes
+// their results, and races on the flags (or on the call count which compiles the body) are benign
+// only because both paths compute the same result.
+public class CompiledFunction {
+    private final StmtNode[] body;
+
+    CompiledFunction(StmtNode[] body) {
+        this.body = body;
+    }
+
+    // The environment already holds the arguments
+    public Object execute(Interpreter interpreter, Environment environment) {
+        Object result = StmtNode.executeAll(body, interpreter, environment);
+        return result == StmtNode.NORMAL ? null : result;
+    }
+}
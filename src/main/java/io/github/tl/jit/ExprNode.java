@@ -0,0 +1,719 @@
+package main.java.io.github.tl.jit;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.error.RuntimeError;
+import main.java.io.github.tl.interpret.Environment;
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.interpret.NotNumber;
+import main.java.io.github.tl.lib.NativeFunction;
+import main.java.io.github.tl.lib.Rope;
+import main.java.io.github.tl.lib.TinyArray;
+import main.java.io.github.tl.resolver.Function;
+import main.java.io.github.tl.resolver.Instance;
+import main.java.io.github.tl.scan.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Compiled expression.
+// Every operator gets its own node class, so each call site in the tree stays monomorphic for JIT.
+public abstract class ExprNode {
+    public abstract Object execute(Interpreter interpreter, Environment environment);
+
+    // Whether the node always produces a number, known at compile time
+    boolean isNumber() {
+        return false;
+    }
+
+    // Skips boxing between arithmetic nodes and variables, throws NotNumber with the value when it is not a number
+    double executeNumber(Interpreter interpreter, Environment environment) {
+        return number(execute(interpreter, environment));
+    }
+
+    static double number(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        throw new NotNumber(value);
+    }
+
+    // Value is not used, like an assignment as statement
+    void executeVoid(Interpreter interpreter, Environment environment) {
+        execute(interpreter, environment);
+    }
+
+    static class Constant extends ExprNode {
+        private final Object value;
+        private final double number;
+
+        Constant(Object value) {
+            this.value = value;
+            this.number = value instanceof Double ? (Double) value : 0;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return value;
+        }
+
+        @Override
+        boolean isNumber() {
+            return value instanceof Double;
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            if (value instanceof Double) {
+                return number;
+            }
+            throw new NotNumber(value);
+        }
+    }
+
+    static class GetLocal extends ExprNode {
+        private final int depth;
+        private final int slot;
+
+        GetLocal(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return environment.getAt(depth, slot);
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            return environment.getNumberAt(depth, slot);
+        }
+    }
+
+    static class SetLocal extends ExprNode {
+        private final int depth;
+        private final int slot;
+        private final ExprNode value;
+        // Stored something else than a number once, stop guessing
+        private boolean boxed = false;
+
+        SetLocal(int depth, int slot, ExprNode value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object result = value.execute(interpreter, environment);
+            environment.assignAt(depth, slot, result);
+            return result;
+        }
+
+        @Override
+        void executeVoid(Interpreter interpreter, Environment environment) {
+            if (!boxed) {
+                try {
+                    environment.assignNumberAt(depth, slot, value.executeNumber(interpreter, environment));
+                } catch (NotNumber e) {
+                    boxed = true;
+                    environment.assignAt(depth, slot, e.value);
+                }
+                return;
+            }
+            environment.assignAt(depth, slot, value.execute(interpreter, environment));
+        }
+    }
+
+    static class GetGlobal extends ExprNode {
+        private final Token name;
+
+        GetGlobal(Token name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return interpreter.globals.get(name);
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            return interpreter.globals.getNumber(name);
+        }
+    }
+
+    static class SetGlobal extends ExprNode {
+        private final Token name;
+        private final ExprNode value;
+        // Stored something else than a number once, stop guessing
+        private boolean boxed = false;
+
+        SetGlobal(Token name, ExprNode value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object result = value.execute(interpreter, environment);
+            interpreter.globals.assign(name, result);
+            return result;
+        }
+
+        @Override
+        void executeVoid(Interpreter interpreter, Environment environment) {
+            if (!boxed) {
+                try {
+                    interpreter.globals.assignNumber(name, value.executeNumber(interpreter, environment));
+                } catch (NotNumber e) {
+                    boxed = true;
+                    interpreter.globals.assign(name, e.value);
+                }
+                return;
+            }
+            interpreter.globals.assign(name, value.execute(interpreter, environment));
+        }
+    }
+
+    //region operators
+    abstract static class Binary extends ExprNode {
+        final Token operator;
+        final ExprNode left;
+        final ExprNode right;
+        // Both operands are numbers, known at compile time
+        final boolean numbers;
+
+        Binary(Token operator, ExprNode left, ExprNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.numbers = left.isNumber() && right.isNumber();
+        }
+
+        // Operands read unboxed, one which is not a number fails the operator once both are evaluated
+        double leftNumber(Interpreter interpreter, Environment environment) {
+            try {
+                return left.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                right.execute(interpreter, environment);
+                throw new RuntimeError(operator, "Operands must be numbers.");
+            }
+        }
+
+        double rightNumber(Interpreter interpreter, Environment environment) {
+            try {
+                return right.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                throw new RuntimeError(operator, "Operands must be numbers.");
+            }
+        }
+    }
+
+    abstract static class Arithmetic extends Binary {
+        Arithmetic(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return executeNumber(interpreter, environment);
+        }
+
+        @Override
+        boolean isNumber() {
+            return true;
+        }
+    }
+
+    static class Subtract extends Arithmetic {
+        Subtract(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            return leftNumber(interpreter, environment) - rightNumber(interpreter, environment);
+        }
+    }
+
+    static class Multiply extends Arithmetic {
+        Multiply(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            return leftNumber(interpreter, environment) * rightNumber(interpreter, environment);
+        }
+    }
+
+    static class Divide extends Arithmetic {
+        Divide(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        private double divide(double left, double right) {
+            if (right == 0) {
+                throw new RuntimeError(operator, "The divisor must not be zero.");
+            }
+            return left / right;
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            return divide(leftNumber(interpreter, environment), rightNumber(interpreter, environment));
+        }
+    }
+
+    static class Add extends Binary {
+        // Added something else than numbers once, stop guessing
+        private boolean generic = false;
+
+        Add(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean isNumber() {
+            return numbers;
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            if (numbers) {
+                return left.executeNumber(interpreter, environment) + right.executeNumber(interpreter, environment);
+            }
+            if (generic) {
+                return super.executeNumber(interpreter, environment);
+            }
+            double l;
+            try {
+                l = left.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                generic = true;
+                throw new NotNumber(add(e.value, right.execute(interpreter, environment)));
+            }
+            try {
+                return l + right.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                generic = true;
+                throw new NotNumber(add(l, e.value));
+            }
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            if (!generic) {
+                try {
+                    return executeNumber(interpreter, environment);
+                } catch (NotNumber e) {
+                    return e.value;
+                }
+            }
+            return add(left.execute(interpreter, environment), right.execute(interpreter, environment));
+        }
+
+        private static Object add(Object l, Object r) {
+            if (l instanceof Double && r instanceof Double) {
+                return (double) l + (double) r;
+            }
+            if (Rope.isString(l) && (Rope.isString(r) || r instanceof Double) || l instanceof Double && Rope.isString(r)) {
+                return Rope.concat(l, r);
+            }
+            return null;
+        }
+    }
+
+    abstract static class Comparison extends Binary {
+        Comparison(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        abstract boolean compare(double left, double right);
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return compare(leftNumber(interpreter, environment), rightNumber(interpreter, environment));
+        }
+    }
+
+    static class Less extends Comparison {
+        Less(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left < right;
+        }
+    }
+
+    static class LessEqual extends Comparison {
+        LessEqual(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left <= right;
+        }
+    }
+
+    static class Greater extends Comparison {
+        Greater(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left > right;
+        }
+    }
+
+    static class GreaterEqual extends Comparison {
+        GreaterEqual(Token operator, ExprNode left, ExprNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left >= right;
+        }
+    }
+
+    static class Equal extends Binary {
+        private final boolean negate;
+
+        Equal(Token operator, ExprNode left, ExprNode right, boolean negate) {
+            super(operator, left, right);
+            this.negate = negate;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object l = left.execute(interpreter, environment);
+            Object r = right.execute(interpreter, environment);
+            return Interpreter.isEqual(l, r) != negate;
+        }
+    }
+
+    static class Negate extends ExprNode {
+        private final Token operator;
+        private final ExprNode right;
+
+        Negate(Token operator, ExprNode right) {
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        boolean isNumber() {
+            return true;
+        }
+
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            try {
+                return -right.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                throw new RuntimeError(operator, "Operand must be a number.");
+            }
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return executeNumber(interpreter, environment);
+        }
+    }
+
+    static class Not extends ExprNode {
+        private final ExprNode right;
+
+        Not(ExprNode right) {
+            this.right = right;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return !Interpreter.isTruthy(right.execute(interpreter, environment));
+        }
+    }
+
+    static class And extends ExprNode {
+        private final ExprNode left;
+        private final ExprNode right;
+
+        And(ExprNode left, ExprNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object value = left.execute(interpreter, environment);
+            if (!Interpreter.isTruthy(value)) {
+                return value;
+            }
+            return right.execute(interpreter, environment);
+        }
+    }
+
+    static class Or extends ExprNode {
+        private final ExprNode left;
+        private final ExprNode right;
+
+        Or(ExprNode left, ExprNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object value = left.execute(interpreter, environment);
+            if (Interpreter.isTruthy(value)) {
+                return value;
+            }
+            return right.execute(interpreter, environment);
+        }
+    }
+
+    static class Ternary extends ExprNode {
+        private final Token question;
+        private final ExprNode condition;
+        private final ExprNode left;
+        private final ExprNode right;
+
+        Ternary(Token question, ExprNode condition, ExprNode left, ExprNode right) {
+            this.question = question;
+            this.condition = condition;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            ExprNode branch = Interpreter.isTruthy(condition.execute(interpreter, environment)) ? left : right;
+            Object value = branch.execute(interpreter, environment);
+            if (!(value instanceof Double)) {
+                throw new RuntimeError(question, "Operand must be a number.");
+            }
+            return value;
+        }
+    }
+    //endregion
+
+    //region object and call
+    static class Call extends ExprNode {
+        private final Expr.Call expr;
+        private final ExprNode callee;
+        private final ExprNode[] arguments;
+
+        Call(Expr.Call expr, ExprNode callee, ExprNode[] arguments) {
+            this.expr = expr;
+            this.callee = callee;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object function = callee.execute(interpreter, environment);
+            if (function instanceof NativeFunction && arguments.length <= 3) {
+                return callNative(interpreter, environment, expr, (NativeFunction) function, arguments);
+            }
+            List<Object> values = new ArrayList<>(arguments.length);
+            for (ExprNode argument : arguments) {
+                values.add(argument.execute(interpreter, environment));
+            }
+            return interpreter.call(expr, function, values);
+        }
+    }
+
+    // Native with at most three arguments, no list of them is made
+    static Object callNative(Interpreter interpreter, Environment environment, Expr.Call expr,
+                             NativeFunction function, ExprNode[] arguments) {
+        Object a = arguments.length > 0 ? arguments[0].execute(interpreter, environment) : null;
+        Object b = arguments.length > 1 ? arguments[1].execute(interpreter, environment) : null;
+        Object c = arguments.length > 2 ? arguments[2].execute(interpreter, environment) : null;
+        return interpreter.callNative(expr, function, arguments.length, a, b, c);
+    }
+
+    // Call of a property, invoke the method directly unless a field holds the callee
+    static class Invoke extends ExprNode {
+        private final Expr.Call expr;
+        private final Expr.Get get;
+        private final ExprNode object;
+        private final ExprNode[] arguments;
+
+        Invoke(Expr.Call expr, Expr.Get get, ExprNode object, ExprNode[] arguments) {
+            this.expr = expr;
+            this.get = get;
+            this.object = object;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object receiver = object.execute(interpreter, environment);
+            Function method = interpreter.findMethod(expr, get, receiver);
+            Object function = method == null ? interpreter.getProperty(get, receiver) : null;
+            if (function instanceof NativeFunction && arguments.length <= 3) {
+                return callNative(interpreter, environment, expr, (NativeFunction) function, arguments);
+            }
+
+            List<Object> values = new ArrayList<>(arguments.length);
+            for (ExprNode argument : arguments) {
+                values.add(argument.execute(interpreter, environment));
+            }
+            if (method != null) {
+                return interpreter.invoke(expr, method, (Instance) receiver, values);
+            }
+            return interpreter.call(expr, function, values);
+        }
+    }
+
+    static class Index extends ExprNode {
+        private final Token bracket;
+        private final ExprNode object;
+        private final ExprNode index;
+
+        Index(Token bracket, ExprNode object, ExprNode index) {
+            this.bracket = bracket;
+            this.object = object;
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object value = object.execute(interpreter, environment);
+            return Interpreter.getIndex(bracket, value, index.execute(interpreter, environment));
+        }
+
+        // Element of an array read unboxed
+        @Override
+        double executeNumber(Interpreter interpreter, Environment environment) {
+            Object value = object.execute(interpreter, environment);
+            if (!(value instanceof TinyArray)) {
+                return number(Interpreter.getIndex(bracket, value, index.execute(interpreter, environment)));
+            }
+            TinyArray array = (TinyArray) value;
+            double i;
+            try {
+                i = index.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                return number(Interpreter.getIndex(bracket, array, e.value));
+            }
+            return array.getNumber(Interpreter.checkIndex(bracket, array, i));
+        }
+    }
+
+    static class SetIndex extends ExprNode {
+        private final Token bracket;
+        private final ExprNode object;
+        private final ExprNode index;
+        private final ExprNode value;
+
+        SetIndex(Token bracket, ExprNode object, ExprNode index, ExprNode value) {
+            this.bracket = bracket;
+            this.object = object;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object target = object.execute(interpreter, environment);
+            Object i = index.execute(interpreter, environment);
+            Object result = value.execute(interpreter, environment);
+            Interpreter.setIndex(bracket, target, i, result);
+            return result;
+        }
+
+        // A number goes into an array without being boxed
+        @Override
+        void executeVoid(Interpreter interpreter, Environment environment) {
+            Object target = object.execute(interpreter, environment);
+            if (!(target instanceof TinyArray) || !value.isNumber()) {
+                Object i = index.execute(interpreter, environment);
+                Interpreter.setIndex(bracket, target, i, value.execute(interpreter, environment));
+                return;
+            }
+            TinyArray array = (TinyArray) target;
+            double i;
+            try {
+                i = index.executeNumber(interpreter, environment);
+            } catch (NotNumber e) {
+                Interpreter.setIndex(bracket, array, e.value, value.execute(interpreter, environment));
+                return;
+            }
+            double number = value.executeNumber(interpreter, environment);
+            array.setNumber(Interpreter.checkIndex(bracket, array, i), number);
+        }
+    }
+
+    static class Get extends ExprNode {
+        private final Expr.Get expr;
+        private final ExprNode object;
+
+        Get(Expr.Get expr, ExprNode object) {
+            this.expr = expr;
+            this.object = object;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return interpreter.getProperty(expr, object.execute(interpreter, environment));
+        }
+    }
+
+    static class Set extends ExprNode {
+        private final Expr.Set expr;
+        private final ExprNode object;
+        private final ExprNode value;
+
+        Set(Expr.Set expr, ExprNode object, ExprNode value) {
+            this.expr = expr;
+            this.object = object;
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object instance = object.execute(interpreter, environment);
+            if (!(instance instanceof Instance)) {
+                throw new RuntimeError(expr.name, "Only instances can set properties.");
+            }
+            Object result = value.execute(interpreter, environment);
+            interpreter.setProperty(expr, (Instance) instance, result);
+            return result;
+        }
+    }
+
+    static class This extends ExprNode {
+        private final int depth;
+
+        This(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return environment.getAt(depth, 0);
+        }
+    }
+
+    // Expression left to the tree-walking interpreter
+    static class Interpreted extends ExprNode {
+        private final Expr expr;
+
+        Interpreted(Expr expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return interpreter.evaluate(expr, environment);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,196 @@
+package main.java.io.github.tl.jit;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.ast.Stmt;
+
+import java.util.List;
+
+// Compile the body of a resolved function into specialized nodes.
+// Nodes call each other directly instead of going through the visitor of interpreter.
+public class FunctionCompiler implements Expr.Visitor<ExprNode>, Stmt.Visitor<StmtNode> {
+    public CompiledFunction compile(Stmt.Function function) {
+        return new CompiledFunction(compile(function.body));
+    }
+
+    private StmtNode[] compile(List<Stmt> statements) {
+        StmtNode[] nodes = new StmtNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = statements.get(i).accept(this);
+        }
+        return nodes;
+    }
+
+    private ExprNode compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    //region expression part
+    @Override
+    public ExprNode visitAssignExpr(Expr.Assign expr) {
+        ExprNode value = compile(expr.value);
+        if (expr.depth != -1) {
+            return new ExprNode.SetLocal(expr.depth, expr.slot, value);
+        }
+        return new ExprNode.SetGlobal(expr.name, value);
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr(Expr.Binary expr) {
+        ExprNode left = compile(expr.left);
+        ExprNode right = compile(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG_EQUAL: return new ExprNode.Equal(expr.operator, left, right, true);
+            case EQUAL_EQUAL: return new ExprNode.Equal(expr.operator, left, right, false);
+            case GREATER: return new ExprNode.Greater(expr.operator, left, right);
+            case GREATER_EQUAL: return new ExprNode.GreaterEqual(expr.operator, left, right);
+            case LESS: return new ExprNode.Less(expr.operator, left, right);
+            case LESS_EQUAL: return new ExprNode.LessEqual(expr.operator, left, right);
+            case PLUS: return new ExprNode.Add(expr.operator, left, right);
+            case MINUS: return new ExprNode.Subtract(expr.operator, left, right);
+            case SLASH: return new ExprNode.Divide(expr.operator, left, right);
+            case STAR: return new ExprNode.Multiply(expr.operator, left, right);
+        }
+
+        return new ExprNode.Interpreted(expr);
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Expr.Call expr) {
+        ExprNode[] arguments = new ExprNode[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compile(expr.arguments.get(i));
+        }
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get) expr.callee;
+            return new ExprNode.Invoke(expr, get, compile(get.object), arguments);
+        }
+        return new ExprNode.Call(expr, compile(expr.callee), arguments);
+    }
+
+    @Override
+    public ExprNode visitGetExpr(Expr.Get expr) {
+        return new ExprNode.Get(expr, compile(expr.object));
+    }
+
+    @Override
+    public ExprNode visitIndexExpr(Expr.Index expr) {
+        return new ExprNode.Index(expr.bracket, compile(expr.object), compile(expr.index));
+    }
+
+    @Override
+    public ExprNode visitSetIndexExpr(Expr.SetIndex expr) {
+        return new ExprNode.SetIndex(expr.bracket, compile(expr.object), compile(expr.index), compile(expr.value));
+    }
+
+    @Override
+    public ExprNode visitSetExpr(Expr.Set expr) {
+        return new ExprNode.Set(expr, compile(expr.object), compile(expr.value));
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Expr.Logical expr) {
+        switch (expr.operator.type) {
+            case AND: return new ExprNode.And(compile(expr.left), compile(expr.right));
+            case OR: return new ExprNode.Or(compile(expr.left), compile(expr.right));
+        }
+        return new ExprNode.Interpreted(expr);
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Expr.Literal expr) {
+        return new ExprNode.Constant(expr.value);
+    }
+
+    @Override
+    public ExprNode visitThisExpr(Expr.This expr) {
+        if (expr.depth == -1) {
+            return new ExprNode.Interpreted(expr);
+        }
+        return new ExprNode.This(expr.depth);
+    }
+
+    @Override
+    public ExprNode visitSuperExpr(Expr.Super expr) {
+        return new ExprNode.Interpreted(expr);
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Expr.Unary expr) {
+        ExprNode right = compile(expr.right);
+        switch (expr.operator.type) {
+            case BANG: return new ExprNode.Not(right);
+            case MINUS: return new ExprNode.Negate(expr.operator, right);
+        }
+        return new ExprNode.Interpreted(expr);
+    }
+
+    @Override
+    public ExprNode visitTernaryExpr(Expr.Ternary expr) {
+        return new ExprNode.Ternary(expr.question,
+                compile(expr.condition), compile(expr.left), compile(expr.right));
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth != -1) {
+            return new ExprNode.GetLocal(expr.depth, expr.slot);
+        }
+        return new ExprNode.GetGlobal(expr.name);
+    }
+    //endregion
+
+    //region statement part
+    @Override
+    public StmtNode visitIfStmt(Stmt.If stmt) {
+        StmtNode elseBranch = stmt.elseBranch == null ? null : stmt.elseBranch.accept(this);
+        return new StmtNode.If(compile(stmt.condition), stmt.thenBranch.accept(this), elseBranch);
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(Stmt.While stmt) {
+        return new StmtNode.While(compile(stmt.condition), stmt.body.accept(this));
+    }
+
+    @Override
+    public StmtNode visitBlockStmt(Stmt.Block stmt) {
+        return new StmtNode.Block(stmt.locals, compile(stmt.statements));
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt(Stmt.Expression stmt) {
+        return new StmtNode.Expression(compile(stmt.expression));
+    }
+
+    @Override
+    public StmtNode visitFunctionStmt(Stmt.Function stmt) {
+        return new StmtNode.Interpreted(stmt);
+    }
+
+    @Override
+    public StmtNode visitClassStmt(Stmt.Class stmt) {
+        return new StmtNode.Interpreted(stmt);
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(Stmt.Print stmt) {
+        return new StmtNode.Print(compile(stmt.expression));
+    }
+
+    @Override
+    public StmtNode visitReturnStmt(Stmt.Return stmt) {
+        return new StmtNode.Return(stmt.value == null ? null : compile(stmt.value));
+    }
+
+    @Override
+    public StmtNode visitVarStmt(Stmt.Var stmt) {
+        // Every variable inside a function body is local
+        return new StmtNode.Var(stmt.slot, stmt.initializer == null ? null : compile(stmt.initializer));
+    }
+    //endregion
+}
@@ -0,0 +1,158 @@
+package main.java.io.github.tl.jit;
+
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.interpret.Environment;
+import main.java.io.github.tl.interpret.Interpreter;
+
+// Compiled statement.
+// Return does not throw here either, the returned value is passed up through the result.
+// Nodes are shared like the CompiledFunction holding them, their only state is one-way speculation flags.
+public abstract class StmtNode {
+    // Result of statement which completes normally, same as in interpreter
+    static final Object NORMAL = Interpreter.NORMAL;
+
+    public abstract Object execute(Interpreter interpreter, Environment environment);
+
+    static class Expression extends StmtNode {
+        private final ExprNode expression;
+
+        Expression(ExprNode expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            expression.executeVoid(interpreter, environment);
+            return NORMAL;
+        }
+    }
+
+    static class Print extends StmtNode {
+        private final ExprNode expression;
+
+        Print(ExprNode expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            interpreter.print(expression.execute(interpreter, environment));
+            return NORMAL;
+        }
+    }
+
+    static class Var extends StmtNode {
+        private final int slot;
+        private final ExprNode initializer;
+
+        Var(int slot, ExprNode initializer) {
+            this.slot = slot;
+            this.initializer = initializer;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            Object value = initializer == null ? null : initializer.execute(interpreter, environment);
+            environment.define(slot, value);
+            return NORMAL;
+        }
+    }
+
+    static class Block extends StmtNode {
+        private final int locals;
+        private final StmtNode[] statements;
+
+        Block(int locals, StmtNode[] statements) {
+            this.locals = locals;
+            this.statements = statements;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            if (locals < 0) {
+                return executeAll(statements, interpreter, environment);
+            }
+            return executeAll(statements, interpreter, new Environment(environment, locals));
+        }
+    }
+
+    static class If extends StmtNode {
+        private final ExprNode condition;
+        private final StmtNode thenBranch;
+        private final StmtNode elseBranch;
+
+        If(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            if (Interpreter.isTruthy(condition.execute(interpreter, environment))) {
+                return thenBranch.execute(interpreter, environment);
+            } else if (elseBranch != null) {
+                return elseBranch.execute(interpreter, environment);
+            }
+            return NORMAL;
+        }
+    }
+
+    static class While extends StmtNode {
+        private final ExprNode condition;
+        private final StmtNode body;
+
+        While(ExprNode condition, StmtNode body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            while (Interpreter.isTruthy(condition.execute(interpreter, environment))) {
+                Object result = body.execute(interpreter, environment);
+                if (result != NORMAL) {
+                    return result;
+                }
+            }
+            return NORMAL;
+        }
+    }
+
+    static class Return extends StmtNode {
+        private final ExprNode value;
+
+        Return(ExprNode value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return value == null ? null : value.execute(interpreter, environment);
+        }
+    }
+
+    // Declarations of functions and classes are left to the tree-walking interpreter
+    static class Interpreted extends StmtNode {
+        private final Stmt stmt;
+
+        Interpreted(Stmt stmt) {
+            this.stmt = stmt;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter, Environment environment) {
+            return interpreter.execute(stmt, environment);
+        }
+    }
+
+    static Object executeAll(StmtNode[] statements, Interpreter interpreter, Environment environment) {
+        for (StmtNode statement : statements) {
+            Object result = statement.execute(interpreter, environment);
+            if (result != NORMAL) {
+                return result;
+            }
+        }
+        return NORMAL;
+    }
+}
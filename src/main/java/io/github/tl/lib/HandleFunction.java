@@ -0,0 +1,100 @@
+package main.java.io.github.tl.lib;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+// Native bound to a Java method through a method handle, looked up once when bound.
+// The handle takes and returns Object, arguments are checked against the parameter types before each call.
+final class HandleFunction extends NativeFunction {
+    private final MethodHandle handle;
+    private final Class<?>[] types;
+
+    HandleFunction(String name, MethodHandle handle) {
+        super(name, handle.type().parameterCount());
+        this.types = handle.type().parameterArray();
+        this.handle = handle.asType(MethodType.genericMethodType(types.length));
+    }
+
+    @Override
+    public Object call0() {
+        try {
+            return (Object) handle.invokeExact();
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    public Object call1(Object a) {
+        a = check(0, a);
+        try {
+            return (Object) handle.invokeExact(a);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    public Object call2(Object a, Object b) {
+        a = check(0, a);
+        b = check(1, b);
+        try {
+            return (Object) handle.invokeExact(a, b);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    public Object call3(Object a, Object b, Object c) {
+        a = check(0, a);
+        b = check(1, b);
+        c = check(2, c);
+        try {
+            return (Object) handle.invokeExact(a, b, c);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    public Object callN(List<Object> arguments) {
+        Object[] values = new Object[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = check(i, arguments.get(i));
+        }
+        try {
+            return handle.invokeWithArguments(values);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // Argument as the method takes it, a rope is flattened into the string it is for any parameter type
+    private Object check(int index, Object argument) {
+        Class<?> type = types[index];
+        argument = Rope.flatten(argument);
+        if (type == double.class && !(argument instanceof Double)) {
+            throw new NativeError("Argument " + (index + 1) + " of " + name() + " must be a number.");
+        }
+        if (type == boolean.class && !(argument instanceof Boolean)) {
+            throw new NativeError("Argument " + (index + 1) + " of " + name() + " must be a boolean.");
+        }
+        if (type == String.class && !(argument instanceof String)) {
+            throw new NativeError("Argument " + (index + 1) + " of " + name() + " must be a string.");
+        }
+        return argument;
+    }
+
+    // Unchecked ones go on as they are, a checked exception of the method is an error of the script
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new NativeError(e.getMessage());
+    }
+}
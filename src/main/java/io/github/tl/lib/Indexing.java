@@ -0,0 +1,32 @@
+package main.java.io.github.tl.lib;
+
+// Index expression on any value, the same for every tier of execution.
+// Errors are NativeError, reported by the caller at the bracket of the expression.
+public final class Indexing {
+    private Indexing() {
+    }
+
+    public static Object get(Object object, Object index) {
+        if (object instanceof TinyArray) {
+            TinyArray array = (TinyArray) object;
+            return array.get(array.indexOf(index));
+        }
+        if (object instanceof TinyMap) {
+            return ((TinyMap) object).get(index);
+        }
+        throw new NativeError("Only arrays and maps can be indexed.");
+    }
+
+    public static void set(Object object, Object index, Object value) {
+        if (object instanceof TinyArray) {
+            TinyArray array = (TinyArray) object;
+            array.set(array.indexOf(index), value);
+            return;
+        }
+        if (object instanceof TinyMap) {
+            ((TinyMap) object).put(index, value);
+            return;
+        }
+        throw new NativeError("Only arrays and maps can be indexed.");
+    }
+}
@@ -0,0 +1,14 @@
+package main.java.io.github.tl.lib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Java method exposed to scripts by NativeRegistry.bind, named as the method unless given a name.
+// Parameters are double, boolean, String or Object; the return type one of those or void, which returns nil.
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Native {
+    String value() default "";
+}
@@ -0,0 +1,9 @@
+package main.java.io.github.tl.lib;
+
+// Error raised by a native value, which knows no position in the script.
+// The interpreter or VM which called it reports it at the expression it was evaluating.
+public class NativeError extends RuntimeException {
+    public NativeError(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,120 @@
+package main.java.io.github.tl.lib;
+
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.resolver.Callable;
+
+import java.util.List;
+
+// Function implemented in Java. Calls with up to three arguments go straight to the method of their arity,
+// no list of arguments is made for them. Natives don't touch the interpreter, so the VM calls them just the same.
+public abstract class NativeFunction implements Callable {
+    public interface Body0 {
+        Object call();
+    }
+
+    public interface Body1 {
+        Object call(Object a);
+    }
+
+    public interface Body2 {
+        Object call(Object a, Object b);
+    }
+
+    public interface Body3 {
+        Object call(Object a, Object b, Object c);
+    }
+
+    private final String name;
+    private final int arity;
+
+    protected NativeFunction(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    //region fixed arity calls, only the one of the arity is called
+    public Object call0() {
+        throw new IllegalStateException(name + " takes " + arity + " arguments.");
+    }
+
+    public Object call1(Object a) {
+        throw new IllegalStateException(name + " takes " + arity + " arguments.");
+    }
+
+    public Object call2(Object a, Object b) {
+        throw new IllegalStateException(name + " takes " + arity + " arguments.");
+    }
+
+    public Object call3(Object a, Object b, Object c) {
+        throw new IllegalStateException(name + " takes " + arity + " arguments.");
+    }
+
+    // More than three arguments
+    public Object callN(List<Object> arguments) {
+        throw new IllegalStateException(name + " takes " + arity + " arguments.");
+    }
+    //endregion
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        switch (arguments.size()) {
+            case 0: return call0();
+            case 1: return call1(arguments.get(0));
+            case 2: return call2(arguments.get(0), arguments.get(1));
+            case 3: return call3(arguments.get(0), arguments.get(1), arguments.get(2));
+        }
+        return callN(arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn " + name + ">";
+    }
+
+    //region natives of lambdas
+    public static NativeFunction of(String name, Body0 body) {
+        return new NativeFunction(name, 0) {
+            @Override
+            public Object call0() {
+                return body.call();
+            }
+        };
+    }
+
+    public static NativeFunction of(String name, Body1 body) {
+        return new NativeFunction(name, 1) {
+            @Override
+            public Object call1(Object a) {
+                return body.call(a);
+            }
+        };
+    }
+
+    public static NativeFunction of(String name, Body2 body) {
+        return new NativeFunction(name, 2) {
+            @Override
+            public Object call2(Object a, Object b) {
+                return body.call(a, b);
+            }
+        };
+    }
+
+    public static NativeFunction of(String name, Body3 body) {
+        return new NativeFunction(name, 3) {
+            @Override
+            public Object call3(Object a, Object b, Object c) {
+                return body.call(a, b, c);
+            }
+        };
+    }
+    //endregion
+}
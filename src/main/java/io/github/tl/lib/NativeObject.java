@@ -0,0 +1,7 @@
+package main.java.io.github.tl.lib;
+
+// Value implemented in Java whose properties are read like those of an instance, as the length of an array
+public interface NativeObject {
+    // Null when there is no such property, none of them is nil
+    Object getProperty(String name);
+}
@@ -0,0 +1,95 @@
+package main.java.io.github.tl.lib;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Natives by name, to be defined into the globals of an interpreter or VM.
+// Java methods are bound by their @Native annotation, each is looked up once into a method handle.
+// The standard registry is shared by every isolate and can't be changed, embedders add theirs in a registry of their own.
+public class NativeRegistry {
+    private static final Set<Class<?>> TYPES = Set.of(double.class, boolean.class, String.class, Object.class);
+
+    // What every script starts with
+    private static final NativeRegistry STANDARD = new NativeRegistry()
+            .define(TinyArray.CONSTRUCTOR)
+            .define(TinyMap.CONSTRUCTOR)
+            .bind(StandardLibrary.class)
+            .freeze();
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    private boolean frozen = false;
+
+    public static NativeRegistry standard() {
+        return STANDARD;
+    }
+
+    public NativeRegistry define(String name, Object value) {
+        if (frozen) {
+            throw new UnsupportedOperationException("Natives can't be added to a shared registry.");
+        }
+        values.put(name, value);
+        return this;
+    }
+
+    // Set up before it is published, nothing changes it afterwards
+    private NativeRegistry freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public NativeRegistry define(NativeFunction function) {
+        return define(function.name(), function);
+    }
+
+    // Every static method of the class annotated with @Native
+    public NativeRegistry bind(Class<?> type) {
+        return bind(type, null);
+    }
+
+    // Every instance method of the object annotated with @Native, called on the object
+    public NativeRegistry bind(Object target) {
+        return bind(target.getClass(), target);
+    }
+
+    private NativeRegistry bind(Class<?> type, Object target) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Method method : type.getMethods()) {
+            Native annotation = method.getAnnotation(Native.class);
+            if (annotation == null || Modifier.isStatic(method.getModifiers()) != (target == null)) {
+                continue;
+            }
+            String name = annotation.value().isEmpty() ? method.getName() : annotation.value();
+            check(name, method);
+            try {
+                MethodHandle handle = lookup.unreflect(method);
+                define(new HandleFunction(name, target == null ? handle : handle.bindTo(target)));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Native " + name + " is not accessible.", e);
+            }
+        }
+        return this;
+    }
+
+    private static void check(String name, Method method) {
+        for (Class<?> parameter : method.getParameterTypes()) {
+            if (!TYPES.contains(parameter)) {
+                throw new IllegalArgumentException("Native " + name + " can't take " + parameter.getSimpleName() + ".");
+            }
+        }
+        Class<?> result = method.getReturnType();
+        if (result != void.class && !TYPES.contains(result)) {
+            throw new IllegalArgumentException("Native " + name + " can't return " + result.getSimpleName() + ".");
+        }
+    }
+
+    public Map<String, Object> values() {
+        return Collections.unmodifiableMap(values);
+    }
+}
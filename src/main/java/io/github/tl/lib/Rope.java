@@ -0,0 +1,96 @@
+package main.java.io.github.tl.lib;
+
+import main.java.io.github.tl.interpret.Interpreter;
+
+// String of the language built by concatenation, flattened into a Java string only when read as one.
+// Ropes appended to one after another share a single builder: a rope is a prefix of it, and adding to
+// the rope which ends where the builder does appends in place. Building a string in a loop copies
+// each part once instead of the whole string on every step. Concatenating anything else copies.
+// Short results stay plain strings, a rope only pays off once there is much to copy.
+public final class Rope implements CharSequence {
+    // Results shorter than this are plain strings
+    private static final int SHORT = 256;
+
+    private final StringBuilder builder;
+    private final int length;
+
+    // Made the first time the rope is read as a string
+    private String flat;
+
+    private Rope(StringBuilder builder, int length) {
+        this.builder = builder;
+        this.length = length;
+    }
+
+    public static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    // Java string of the value if it is a rope, any other value as it is
+    public static Object flatten(Object value) {
+        return value instanceof Rope ? value.toString() : value;
+    }
+
+    // Both strings, or one of them a number written as print does
+    public static Object concat(Object left, Object right) {
+        CharSequence first = left instanceof Double ? Interpreter.stringify(left) : (CharSequence) left;
+        CharSequence second = right instanceof Double ? Interpreter.stringify(right) : (CharSequence) right;
+        int length = first.length() + second.length();
+        if (length < SHORT) {
+            return first.toString().concat(second.toString());
+        }
+
+        if (first instanceof Rope) {
+            Rope rope = (Rope) first;
+            // Nothing was appended after this rope yet, go on in the same builder
+            if (rope.builder.length() == rope.length) {
+                append(rope.builder, second);
+                return new Rope(rope.builder, length);
+            }
+        }
+        StringBuilder builder = new StringBuilder(length * 2);
+        append(builder, first);
+        append(builder, second);
+        return new Rope(builder, length);
+    }
+
+    private static void append(StringBuilder builder, CharSequence text) {
+        if (text instanceof Rope) {
+            Rope rope = (Rope) text;
+            // A rope appended to itself reads from the string instead of the builder it grows
+            if (rope.flat != null || rope.builder == builder) {
+                builder.append(rope.toString());
+            } else {
+                builder.append(rope.builder, 0, rope.length);
+            }
+        } else {
+            builder.append((String) text);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return builder.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            flat = builder.substring(0, length);
+        }
+        return flat;
+    }
+}
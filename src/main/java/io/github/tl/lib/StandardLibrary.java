@@ -0,0 +1,118 @@
+package main.java.io.github.tl.lib;
+
+import main.java.io.github.tl.interpret.Interpreter;
+
+import java.io.BufferedReader;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+// Natives every script starts with: clock, math, strings and reading input.
+// Reading input needs the output of its interpreter, so readLine is made for each one instead of bound.
+public final class StandardLibrary {
+    // Standard input of the process, one reader shared by every interpreter and the REPL
+    // so none of them buffers lines away from the others
+    private static BufferedReader standardInput;
+
+    private StandardLibrary() {
+    }
+
+    public static synchronized BufferedReader standardInput() {
+        if (standardInput == null) {
+            standardInput = new BufferedReader(new InputStreamReader(System.in));
+        }
+        return standardInput;
+    }
+
+    // Next line of the input, nil at its end. The output is flushed first, so what script printed before asking shows up.
+    public static NativeFunction readLine(BufferedReader input, Flushable output) {
+        return NativeFunction.of("readLine", () -> {
+            try {
+                output.flush();
+                return input.readLine();
+            } catch (IOException e) {
+                throw new NativeError(e.getMessage());
+            }
+        });
+    }
+
+    // Seconds since some fixed point, for measuring
+    @Native
+    public static double clock() {
+        return System.nanoTime() / 1e9;
+    }
+
+    //region math
+    @Native
+    public static double sqrt(double x) {
+        return Math.sqrt(x);
+    }
+
+    @Native
+    public static double floor(double x) {
+        return Math.floor(x);
+    }
+
+    @Native
+    public static double abs(double x) {
+        return Math.abs(x);
+    }
+
+    @Native
+    public static double min(double a, double b) {
+        return Math.min(a, b);
+    }
+
+    @Native
+    public static double max(double a, double b) {
+        return Math.max(a, b);
+    }
+
+    @Native
+    public static double pow(double base, double exponent) {
+        return Math.pow(base, exponent);
+    }
+    //endregion
+
+    //region strings
+    // Length of string, array or map
+    @Native
+    public static double len(Object value) {
+        if (Rope.isString(value)) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof TinyArray) {
+            return ((TinyArray) value).length();
+        }
+        if (value instanceof TinyMap) {
+            return ((TinyMap) value).size();
+        }
+        throw new NativeError("Only strings, arrays and maps have a length.");
+    }
+
+    @Native
+    public static String substring(String text, double start, double end) {
+        if (start != Math.floor(start) || end != Math.floor(end) || start < 0 || end > text.length() || start > end) {
+            throw new NativeError("Substring from " + Interpreter.stringify(start) + " to "
+                    + Interpreter.stringify(end) + " is out of bounds for length " + text.length() + ".");
+        }
+        return text.substring((int) start, (int) end);
+    }
+
+    // Text of any value, as printed
+    @Native
+    public static String str(Object value) {
+        return Interpreter.stringify(value);
+    }
+
+    // Number in the string, nil if it is not one
+    @Native
+    public static Object num(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    //endregion
+}
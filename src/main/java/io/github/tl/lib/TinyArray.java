@@ -0,0 +1,160 @@
+package main.java.io.github.tl.lib;
+
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.interpret.NotNumber;
+import main.java.io.github.tl.symbol.Symbol;
+
+import java.util.Arrays;
+
+// Array of the language, made by Array(length) with as many zeros.
+// Elements are kept unboxed in a double[] as long as only numbers are stored,
+// the first element of another type moves all of them to an Object[] for good.
+public class TinyArray implements NativeObject {
+    public static final Symbol LENGTH = Symbol.of("length");
+
+    public static final NativeFunction CONSTRUCTOR = NativeFunction.of("Array", length -> {
+        if (!(length instanceof Double) || (double) length < 0 || (double) length != Math.floor((double) length)) {
+            throw new NativeError("Array length must be a non-negative integer.");
+        }
+        return new TinyArray((int) (double) length);
+    });
+
+    private double[] numbers;
+    // Null while numbers holds the elements
+    private Object[] values;
+    private int length;
+
+    // Methods bound to this array, made once on first use
+    private NativeFunction pushMethod;
+    private NativeFunction popMethod;
+
+    public TinyArray(int length) {
+        this.numbers = new double[Math.max(length, 8)];
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // Checked index of an element, the index must be an integer within length
+    public int indexOf(Object index) {
+        if (!(index instanceof Double)) {
+            throw new NativeError("Array index must be an integer.");
+        }
+        return indexOf((double) index);
+    }
+
+    public int indexOf(double index) {
+        int i = (int) index;
+        if (i != index) {
+            throw new NativeError("Array index must be an integer.");
+        }
+        if (i < 0 || i >= length) {
+            throw new NativeError("Array index " + i + " is out of bounds for length " + length + ".");
+        }
+        return i;
+    }
+
+    public Object get(int index) {
+        return values == null ? (Object) numbers[index] : values[index];
+    }
+
+    // Throws NotNumber with the element when it is not a number
+    public double getNumber(int index) {
+        if (values == null) {
+            return numbers[index];
+        }
+        Object value = values[index];
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        throw new NotNumber(value);
+    }
+
+    public void set(int index, Object value) {
+        if (values == null) {
+            if (value instanceof Double) {
+                numbers[index] = (Double) value;
+                return;
+            }
+            box();
+        }
+        values[index] = value;
+    }
+
+    public void setNumber(int index, double value) {
+        if (values == null) {
+            numbers[index] = value;
+        } else {
+            values[index] = value;
+        }
+    }
+
+    public void push(Object value) {
+        int capacity = values == null ? numbers.length : values.length;
+        if (length == capacity) {
+            if (values == null) {
+                numbers = Arrays.copyOf(numbers, capacity * 2);
+            } else {
+                values = Arrays.copyOf(values, capacity * 2);
+            }
+        }
+        length++;
+        set(length - 1, value);
+    }
+
+    // Nil when empty
+    public Object pop() {
+        if (length == 0) {
+            return null;
+        }
+        Object value = get(length - 1);
+        if (values != null) {
+            values[length - 1] = null;
+        }
+        length--;
+        return value;
+    }
+
+    private void box() {
+        values = new Object[numbers.length];
+        for (int i = 0; i < length; i++) {
+            values[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        switch (name) {
+            case "length": return (double) length;
+            case "push":
+                if (pushMethod == null) {
+                    pushMethod = NativeFunction.of("push", value -> {
+                        push(value);
+                        return null;
+                    });
+                }
+                return pushMethod;
+            case "pop":
+                if (popMethod == null) {
+                    popMethod = NativeFunction.of("pop", this::pop);
+                }
+                return popMethod;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(Interpreter.stringify(get(i)));
+        }
+        return text.append("]").toString();
+    }
+}
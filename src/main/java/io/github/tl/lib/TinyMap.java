@@ -0,0 +1,161 @@
+package main.java.io.github.tl.lib;
+
+import main.java.io.github.tl.interpret.Interpreter;
+
+// Map of the language, made by Map(). Any value is a key, equal as the == operator says.
+// Keys and values sit in two arrays by open addressing with linear probing, no entry object per key.
+// The table is kept at most half full, removal shifts the following entries back instead of leaving tombstones.
+public class TinyMap implements NativeObject {
+    public static final NativeFunction CONSTRUCTOR = NativeFunction.of("Map", TinyMap::new);
+
+    // Stands for the nil key, null is a free slot
+    private static final Object NIL = new Object();
+
+    private Object[] keys = new Object[8];
+    private Object[] values = new Object[8];
+    private int size = 0;
+    // Slot of a hash is in its top bits, 32 - log2 of capacity
+    private int shift = 29;
+
+    // Methods bound to this map, made once on first use
+    private NativeFunction hasMethod;
+    private NativeFunction removeMethod;
+    private NativeFunction keysMethod;
+
+    public int size() {
+        return size;
+    }
+
+    // Nil when there is no such key
+    public Object get(Object key) {
+        int slot = slotOf(keyOf(key));
+        return values[slot];
+    }
+
+    public boolean has(Object key) {
+        return keys[slotOf(keyOf(key))] != null;
+    }
+
+    public void put(Object key, Object value) {
+        key = keyOf(key);
+        int slot = slotOf(key);
+        if (keys[slot] == null) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    // Value which was removed, nil when there was no such key
+    public Object remove(Object key) {
+        int slot = slotOf(keyOf(key));
+        if (keys[slot] == null) {
+            return null;
+        }
+        Object value = values[slot];
+        int mask = keys.length - 1;
+        // Move back every following entry which would be unreachable past the hole
+        for (int next = (slot + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = hash(keys[next]);
+            boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!reachable) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = null;
+        values[slot] = null;
+        size--;
+        return value;
+    }
+
+    // Keys in no particular order
+    public TinyArray keys() {
+        TinyArray array = new TinyArray(0);
+        for (Object key : keys) {
+            if (key != null) {
+                array.push(key == NIL ? null : key);
+            }
+        }
+        return array;
+    }
+
+    // Nil as its own key, ropes as the strings they are equal to
+    private static Object keyOf(Object key) {
+        return key == null ? NIL : Rope.flatten(key);
+    }
+
+    private int hash(Object key) {
+        // Fibonacci hashing, spreads the hashes of integral numbers which vary only in high bits
+        return (key.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    // Slot holding the key, or the free slot where it would go
+    private int slotOf(Object key) {
+        int mask = keys.length - 1;
+        int slot = hash(key);
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        shift--;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        switch (name) {
+            case "size": return (double) size;
+            case "has":
+                if (hasMethod == null) {
+                    hasMethod = NativeFunction.of("has", key -> has(key));
+                }
+                return hasMethod;
+            case "remove":
+                if (removeMethod == null) {
+                    removeMethod = NativeFunction.of("remove", key -> remove(key));
+                }
+                return removeMethod;
+            case "keys":
+                if (keysMethod == null) {
+                    keysMethod = NativeFunction.of("keys", this::keys);
+                }
+                return keysMethod;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                if (text.length() > 1) {
+                    text.append(", ");
+                }
+                text.append(Interpreter.stringify(keys[i] == NIL ? null : keys[i]))
+                        .append(": ")
+                        .append(Interpreter.stringify(values[i]));
+            }
+        }
+        return text.append("}").toString();
+    }
+}
@@ -0,0 +1,366 @@
+package main.java.io.github.tl.optimize;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.scan.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Fold constant parts of resolved tree, run between resolver and execution.
+// Only what gives the same result as the interpreter does is folded: an expression which would fail at runtime,
+// like dividing by zero or negating a string, is left for the interpreter to report.
+// Nodes are only rebuilt when their children change, keeping what resolver stored in them.
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    public List<Stmt> optimize(List<Stmt> statements) {
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            Stmt result = optimize(statement);
+            // Dead branches leave nothing behind
+            if (result != null) {
+                optimized.add(result);
+            }
+        }
+        return optimized;
+    }
+
+    private Stmt optimize(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private List<Expr> optimizeExprs(List<Expr> exprs) {
+        List<Expr> optimized = new ArrayList<>(exprs.size());
+        for (Expr expr : exprs) {
+            optimized.add(optimize(expr));
+        }
+        return optimized;
+    }
+
+    // Branches and loop bodies must stay a statement
+    private Stmt optimizeBranch(Stmt stmt) {
+        if (stmt == null) {
+            return null;
+        }
+        Stmt optimized = optimize(stmt);
+        if (optimized == null) {
+            Stmt.Block empty = new Stmt.Block(new ArrayList<>());
+            empty.locals = -1;
+            return empty;
+        }
+        return optimized;
+    }
+
+    private static boolean isConstant(Expr expr) {
+        return expr instanceof Expr.Literal;
+    }
+
+    private static Object valueOf(Expr expr) {
+        return ((Expr.Literal) expr).value;
+    }
+
+    //region expressions
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr value = optimize(expr.value);
+        if (value == expr.value) {
+            return expr;
+        }
+        Expr.Assign assign = new Expr.Assign(expr.name, value);
+        assign.depth = expr.depth;
+        assign.slot = expr.slot;
+        return assign;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (isConstant(left) && isConstant(right)) {
+            Expr folded = fold(expr.operator.type, valueOf(left), valueOf(right));
+            if (folded != null) {
+                return folded;
+            }
+        }
+        if (left == expr.left && right == expr.right) {
+            return expr;
+        }
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    // Null if it can't be folded, the interpreter would report an error or the operands aren't simple values
+    private static Expr fold(TokenType operator, Object left, Object right) {
+        boolean numbers = left instanceof Double && right instanceof Double;
+        switch (operator) {
+            case BANG_EQUAL: return new Expr.Literal(!Interpreter.isEqual(left, right));
+            case EQUAL_EQUAL: return new Expr.Literal(Interpreter.isEqual(left, right));
+            case GREATER: return numbers ? new Expr.Literal((double) left > (double) right) : null;
+            case GREATER_EQUAL: return numbers ? new Expr.Literal((double) left >= (double) right) : null;
+            case LESS: return numbers ? new Expr.Literal((double) left < (double) right) : null;
+            case LESS_EQUAL: return numbers ? new Expr.Literal((double) left <= (double) right) : null;
+            case MINUS: return numbers ? new Expr.Literal((double) left - (double) right) : null;
+            case STAR: return numbers ? new Expr.Literal((double) left * (double) right) : null;
+            case SLASH:
+                if (numbers && (double) right != 0) {
+                    return new Expr.Literal((double) left / (double) right);
+                }
+                return null;
+            case PLUS:
+                if (numbers) {
+                    return new Expr.Literal((double) left + (double) right);
+                }
+                if ((left instanceof String || left instanceof Double) && (right instanceof String || right instanceof Double)) {
+                    return new Expr.Literal(Interpreter.stringify(left) + Interpreter.stringify(right));
+                }
+                return null;
+        }
+        return null;
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        Expr callee = optimize(expr.callee);
+        List<Expr> arguments = optimizeExprs(expr.arguments);
+        if (callee == expr.callee && arguments.equals(expr.arguments)) {
+            return expr;
+        }
+        Expr.Call call = new Expr.Call(callee, expr.paren, arguments);
+        call.tail = expr.tail;
+        return call;
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        Expr object = optimize(expr.object);
+        if (object == expr.object) {
+            return expr;
+        }
+        return new Expr.Get(object, expr.name);
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        Expr object = optimize(expr.object);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && value == expr.value) {
+            return expr;
+        }
+        return new Expr.Set(object, expr.name, value);
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        Expr object = optimize(expr.object);
+        Expr index = optimize(expr.index);
+        if (object == expr.object && index == expr.index) {
+            return expr;
+        }
+        return new Expr.Index(object, expr.bracket, index);
+    }
+
+    @Override
+    public Expr visitSetIndexExpr(Expr.SetIndex expr) {
+        Expr object = optimize(expr.object);
+        Expr index = optimize(expr.index);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && index == expr.index && value == expr.value) {
+            return expr;
+        }
+        return new Expr.SetIndex(object, expr.bracket, index, value);
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (isConstant(left)) {
+            boolean truthy = Interpreter.isTruthy(valueOf(left));
+            // Short circuit to the left value, or always go on to the right
+            if (expr.operator.type == TokenType.AND) {
+                return truthy ? right : left;
+            }
+            return truthy ? left : right;
+        }
+        if (left == expr.left && right == expr.right) {
+            return expr;
+        }
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    // Grouping only matters to parser
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = optimize(expr.right);
+        if (isConstant(right)) {
+            Object value = valueOf(right);
+            if (expr.operator.type == TokenType.BANG) {
+                return new Expr.Literal(!Interpreter.isTruthy(value));
+            }
+            if (expr.operator.type == TokenType.MINUS && value instanceof Double) {
+                return new Expr.Literal(-(double) value);
+            }
+        }
+        if (right == expr.right) {
+            return expr;
+        }
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitTernaryExpr(Expr.Ternary expr) {
+        Expr condition = optimize(expr.condition);
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (isConstant(condition)) {
+            Expr chosen = Interpreter.isTruthy(valueOf(condition)) ? left : right;
+            // The result must be a number, otherwise leave the check to the interpreter
+            if (isConstant(chosen) && valueOf(chosen) instanceof Double) {
+                return chosen;
+            }
+        }
+        if (condition == expr.condition && left == expr.left && right == expr.right) {
+            return expr;
+        }
+        return new Expr.Ternary(condition, expr.question, left, expr.colon, right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+    //endregion
+
+    //region statements
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (isConstant(condition)) {
+            // Only the branch taken is left, or nothing at all
+            if (Interpreter.isTruthy(valueOf(condition))) {
+                return optimize(stmt.thenBranch);
+            }
+            return stmt.elseBranch == null ? null : optimize(stmt.elseBranch);
+        }
+        Stmt thenBranch = optimizeBranch(stmt.thenBranch);
+        Stmt elseBranch = optimizeBranch(stmt.elseBranch);
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) {
+            return stmt;
+        }
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Expr condition = optimize(stmt.condition);
+        // Loop never entered
+        if (isConstant(condition) && !Interpreter.isTruthy(valueOf(condition))) {
+            return null;
+        }
+        Stmt body = optimizeBranch(stmt.body);
+        if (condition == stmt.condition && body == stmt.body) {
+            return stmt;
+        }
+        return new Stmt.While(condition, body);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        List<Stmt> statements = optimize(stmt.statements);
+        if (statements.equals(stmt.statements)) {
+            return stmt;
+        }
+        Stmt.Block block = new Stmt.Block(statements);
+        block.locals = stmt.locals;
+        return block;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression == stmt.expression) {
+            return stmt;
+        }
+        return new Stmt.Expression(expression);
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        List<Stmt> body = optimize(stmt.body);
+        if (body.equals(stmt.body)) {
+            return stmt;
+        }
+        Stmt.Function function = new Stmt.Function(stmt.name, stmt.params, body);
+        function.slot = stmt.slot;
+        function.locals = stmt.locals;
+        return function;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+        for (Stmt.Function method : stmt.methods) {
+            methods.add((Stmt.Function) optimize(method));
+        }
+        if (methods.equals(stmt.methods)) {
+            return stmt;
+        }
+        Stmt.Class klass = new Stmt.Class(stmt.name, stmt.superclass, methods);
+        klass.slot = stmt.slot;
+        klass.shape = stmt.shape;
+        return klass;
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression == stmt.expression) {
+            return stmt;
+        }
+        return new Stmt.Print(expression);
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        Expr value = optimize(stmt.value);
+        if (value == stmt.value) {
+            return stmt;
+        }
+        return new Stmt.Return(stmt.keyword, value);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Expr initializer = optimize(stmt.initializer);
+        if (initializer == stmt.initializer) {
+            return stmt;
+        }
+        Stmt.Var var = new Stmt.Var(stmt.name, initializer);
+        var.slot = stmt.slot;
+        return var;
+    }
+    //endregion
+}
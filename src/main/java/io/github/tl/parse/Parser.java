@@ -1,10 +1,11 @@
 package main.java.io.github.tl.parse;
 
-import main.java.io.github.tl.TinyLanguage;
 import main.java.io.github.tl.ast.Expr;
 import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.error.ErrorReporter;
 import main.java.io.github.tl.error.ParseError;
 import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.scan.TokenBuffer;
 import main.java.io.github.tl.scan.TokenType;
 
 import java.util.ArrayList;
@@ -14,15 +15,18 @@ import java.util.List;
 import static main.java.io.github.tl.scan.TokenType.*;
 
 public class Parser {
-    private final List<Token> tokens;
+    // Read by index, a Token is only made for the ones kept in the tree or reported
+    private final TokenBuffer tokens;
+    private final ErrorReporter reporter;
     private int current = 0;
 
-    public Parser(List<Token> tokens) {
+    public Parser(TokenBuffer tokens, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
     }
 
     private ParseError error(Token token, String message) {
-        TinyLanguage.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -30,9 +34,9 @@ public class Parser {
         advance();
 
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
+            if (tokens.type(current - 1) == SEMICOLON) return;
 
-            switch (peek().type) {
+            switch (tokens.type(current)) {
                 case CLASS:
                 case FUN:
                 case VAR:
@@ -224,12 +228,9 @@ public class Parser {
         Stmt body = statement();
 
         // Convert to while statement
-        Stmt whileBody = new Stmt.Block(
-                Arrays.asList(
-                        body,
-                        new Stmt.Expression(increment)
-                )
-        );
+        Stmt whileBody = increment == null ?
+                body :
+                new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
         Expr whileCond = condition == null? new Expr.Literal(true) : condition;
         Stmt whileStatement = new Stmt.While(whileCond, whileBody);
 
@@ -262,7 +263,8 @@ public class Parser {
             Token nextToken = peekNext();
             if (nextToken != null && nextToken.type == COLON) {
                 Expr leftExpr = assignment();
-                Token colon = advance();
+                advance();
+                Token colon = previous();
                 Expr rightExpr = assignment();
                 expr = new Expr.Ternary(expr, question, leftExpr, colon,rightExpr);
             } else {
@@ -286,6 +288,9 @@ public class Parser {
             } else if (expr instanceof Expr.Get) {
                 Expr.Get get = (Expr.Get)expr;
                 return new Expr.Set(get.object, get.name, value);
+            } else if (expr instanceof Expr.Index) {
+                Expr.Index index = (Expr.Index)expr;
+                return new Expr.SetIndex(index.object, index.bracket, index.index, value);
             }
 
             throw error(equals, "Invalid assignment target.");
@@ -387,6 +392,10 @@ public class Parser {
             } else if (match(DOT)) {
                 Token name = consume(IDENTIFIER, "Expected property name after '.'!");
                 expr = new Expr.Get(expr, name);
+            } else if (match(LEFT_BRACKET)) {
+                Expr index = expression();
+                Token bracket = consume(RIGHT_BRACKET, "Expected ']' after index!");
+                expr = new Expr.Index(expr, bracket, index);
             } else{
                 break;
             }
@@ -427,7 +436,7 @@ public class Parser {
         if (match(NIL)) return new Expr.Literal(null);
 
         if (match(NUMBER, STRING)) {
-            return new Expr.Literal(previous().literal);
+            return new Expr.Literal(tokens.literal(current - 1));
         }
 
         if (match(LEFT_PAREN)) {
@@ -446,7 +455,8 @@ public class Parser {
 
     private Token consume(TokenType expected, String message) {
         if (check(expected)) {
-            return advance();
+            advance();
+            return previous();
         }
         throw error(peek(), message);
     }
@@ -465,31 +475,30 @@ public class Parser {
 
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return tokens.type(current) == type;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     private Token peekNext() {
-        if (!isAtEnd() && tokens.get(current + 1).type != EOF) {
-            return tokens.get(current + 1);
+        if (!isAtEnd() && tokens.type(current + 1) != EOF) {
+            return tokens.token(current + 1);
         }
         return null;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
-    private Token advance() {
+    private void advance() {
         if (!isAtEnd()) current++;
-        return previous();
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return tokens.type(current) == EOF;
     }
     //endregion
 }
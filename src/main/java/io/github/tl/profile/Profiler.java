@@ -0,0 +1,111 @@
+package main.java.io.github.tl.profile;
+
+import main.java.io.github.tl.scan.Token;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Sampling profiler of scripts.
+// The interpreter pushes a frame for every call of a function or class, labelled with the line of the call,
+// a background thread copies the stack at a fixed interval and counts identical stacks.
+public class Profiler {
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final String ROOT = "<script>";
+
+    // Names of called functions, written by the interpreter thread only
+    private Token[] frames = new Token[64];
+
+    // Line of the call which pushed the frame at the same index
+    private int[] lines = new int[64];
+
+    // Line of the call about to be made, set by the interpreter before it calls
+    private int line = 0;
+
+    // Published after the frame is written, so the sampler sees a complete stack
+    private volatile int depth = 0;
+
+    private final Map<String, Integer> samples = new HashMap<>();
+
+    private final Thread sampler = new Thread(this::sample, "tl-profiler");
+
+    private volatile boolean running = false;
+
+    //region call stack
+    public void at(Token paren) {
+        line = paren.line;
+    }
+
+    public void enter(Token name) {
+        int top = depth;
+        if (top == frames.length) {
+            lines = Arrays.copyOf(lines, top * 2);
+            frames = Arrays.copyOf(frames, top * 2);
+        }
+        lines[top] = line;
+        frames[top] = name;
+        depth = top + 1;
+    }
+
+    // Frame of a tail call taking the place of its caller
+    public void replace(Token name) {
+        lines[depth - 1] = line;
+        frames[depth - 1] = name;
+    }
+
+    public void exit() {
+        depth = depth - 1;
+    }
+    //endregion
+
+    //region sampling
+    public void start() {
+        running = true;
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample() {
+        StringBuilder stack = new StringBuilder();
+        while (running) {
+            LockSupport.parkNanos(INTERVAL);
+            Token[] frames = this.frames;
+            int[] lines = this.lines;
+            int depth = Math.min(this.depth, Math.min(frames.length, lines.length));
+
+            stack.setLength(0);
+            stack.append(ROOT);
+            for (int i = 0; i < depth; i++) {
+                Token frame = frames[i];
+                stack.append(';').append(frame.lexeme).append(':').append(lines[i]);
+            }
+            samples.merge(stack.toString(), 1, Integer::sum);
+        }
+    }
+    //endregion
+
+    // Collapsed stacks, one line per distinct stack with its count, read by flamegraph.pl and alike
+    public void write(String path) throws IOException {
+        try (PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Integer> entry : new TreeMap<>(samples).entrySet()) {
+                writer.println(entry.getKey() + " " + entry.getValue());
+            }
+        }
+    }
+}
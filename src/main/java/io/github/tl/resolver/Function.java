@@ -1,23 +1,37 @@
 package main.java.io.github.tl.resolver;
 
 import main.java.io.github.tl.ast.Stmt;
-import main.java.io.github.tl.error.ReturnError;
 import main.java.io.github.tl.interpret.Environment;
 import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.jit.CompiledFunction;
+import main.java.io.github.tl.jit.FunctionCompiler;
+import main.java.io.github.tl.profile.Profiler;
 
 import java.util.List;
 
 public class Function implements Callable {
+    // Calls of a declaration before its body is compiled
+    private static final int COMPILE_THRESHOLD = 64;
+
     private final Stmt.Function declaration;
 
     private final Environment closure;
 
     private final Boolean isInit;
 
+    // Instance bound to a method, which lives in the first slot of its environment
+    private final Instance receiver;
+
     public Function(Stmt.Function declaration, Environment closure, Boolean isInit) {
-        this.closure = (Environment) closure.clone();
+        this(declaration, closure, isInit, null);
+    }
+
+    private Function(Stmt.Function declaration, Environment closure, Boolean isInit, Instance receiver) {
+        // Capture the environment itself, resolver has fixed which slots we see in it
+        this.closure = closure;
         this.declaration = declaration;
         this.isInit = isInit;
+        this.receiver = receiver;
     }
 
     @Override
@@ -27,23 +41,71 @@ public class Function implements Callable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(this.closure);
+        return invoke(interpreter, this.receiver, arguments);
+    }
+
+    // Call as a method of receiver without binding it first
+    public Object invoke(Interpreter interpreter, Instance receiver, List<Object> arguments) {
+        Profiler profiler = interpreter.profiler;
+        if (profiler == null) {
+            return run(interpreter, receiver, arguments);
+        }
+        profiler.enter(declaration.name);
+        try {
+            return run(interpreter, receiver, arguments);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    // Call made in tail position, returned by the caller for its invoke to run
+    public TailCall tailCall(List<Object> arguments) {
+        return new TailCall(this, this.receiver, arguments);
+    }
+
+    public TailCall tailCall(Instance receiver, List<Object> arguments) {
+        return new TailCall(this, receiver, arguments);
+    }
+
+    // Body, then every tail call returned in its place, so a chain of them takes no more Java stack than one call.
+    // Each one gets an environment of its own closure, the caller's is dropped.
+    private Object run(Interpreter interpreter, Instance receiver, List<Object> arguments) {
+        Object value = execute(interpreter, receiver, arguments);
+        while (value instanceof TailCall) {
+            TailCall call = (TailCall) value;
+            if (interpreter.profiler != null) {
+                interpreter.profiler.replace(call.function.declaration.name);
+            }
+            value = call.function.execute(interpreter, call.receiver, call.arguments);
+        }
+        return value;
+    }
+
+    private Object execute(Interpreter interpreter, Instance receiver, List<Object> arguments) {
+        Environment environment = new Environment(this.closure, declaration.locals);
+        int first = 0;
+        if (receiver != null) {
+            environment.define(first++, receiver);
+        }
         for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+            environment.define(first + i, arguments.get(i));
         }
 
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (ReturnError returnValue) {
-            if (this.isInit) return closure.getAt(0, "this");
-            return returnValue.value;
+        CompiledFunction compiled = declaration.compiled;
+        if (compiled == null && ++declaration.calls >= COMPILE_THRESHOLD) {
+            compiled = declaration.compiled = new FunctionCompiler().compile(declaration);
+        }
+        if (compiled != null) {
+            Object value = compiled.execute(interpreter, environment);
+            return this.isInit ? receiver : value;
         }
 
+        Object value = interpreter.executeBlock(declaration.body, environment);
         if (this.isInit) {
-            return this.closure.getAt(0, "this");
+            return receiver;
         }
 
-        return null;
+        return value == Interpreter.NORMAL ? null : value;
     }
 
     @Override
@@ -52,8 +114,6 @@ public class Function implements Callable {
     }
 
     public Function bind(Instance instance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new Function(declaration, environment, this.isInit);
+        return new Function(declaration, closure, this.isInit, instance);
     }
 }
@@ -3,16 +3,21 @@ package main.java.io.github.tl.resolver;
 import main.java.io.github.tl.error.RuntimeError;
 import main.java.io.github.tl.scan.Token;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class Instance {
+    private static final Object[] NO_FIELDS = new Object[0];
+
     public Klass klass;
 
-    public Map<String, Object> fields = new HashMap<>();
+    // Field names live in the shape, values at the same index
+    public Shape shape;
+
+    public Object[] fields = NO_FIELDS;
 
     public Instance(Klass klass) {
         this.klass = klass;
+        this.shape = klass.getShape();
     }
 
     @Override
@@ -20,11 +25,8 @@ public class Instance {
         return klass.getName() + " instance.";
     }
 
-    public Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
-        }
-        Function method = klass.findMethod(name.lexeme);
+    public Object getMethod(Token name) {
+        Function method = klass.findMethod(name.symbol);
         if (method != null) {
             return method.bind(this);
         }
@@ -32,7 +34,12 @@ public class Instance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
-    public void set(Token property, Object value) {
-        fields.put(property.lexeme, value);
+    // Move to a shape with one more field, return the index of it
+    public int addField(Shape next) {
+        if (fields.length < next.size()) {
+            fields = Arrays.copyOf(fields, Math.max(4, fields.length * 2));
+        }
+        shape = next;
+        return next.size() - 1;
     }
 }
@@ -1,57 +1,88 @@
 package main.java.io.github.tl.resolver;
 
 import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.profile.Profiler;
+import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.symbol.Symbol;
+import main.java.io.github.tl.symbol.SymbolMap;
 
 import java.util.List;
-import java.util.Map;
 
 public class Klass implements Callable {
-    private final String name;
+    private final Token name;
 
-    private final Klass superclass;
+    // Own methods together with the inherited ones, fixed once the class is defined
+    private final SymbolMap<Function> methods;
 
-    private final Map<String, Function> methods;
+    private final Function initializer;
 
-    public Klass(String name, Klass superclass, Map<String, Function> methods) {
+    // Every instance starts with this shape, shared by all classes of the same declaration
+    private final Shape shape;
+
+    public Klass(Token name, Klass superclass, SymbolMap<Function> methods, Shape shape) {
         this.name = name;
-        this.superclass = superclass;
-        this.methods = methods;
+        this.shape = shape;
+        this.methods = flatten(superclass, methods);
+        this.initializer = this.methods.get(Symbol.INIT);
+    }
+
+    private static SymbolMap<Function> flatten(Klass superclass, SymbolMap<Function> methods) {
+        if (superclass == null) {
+            return new SymbolMap<>(methods);
+        }
+        SymbolMap<Function> table = new SymbolMap<>(superclass.methods);
+        table.putAll(methods);
+        return table;
     }
 
     @Override
     public String toString() {
-        return name;
+        return name.lexeme;
     }
 
     @Override
     public int arity() {
-        Function init = findMethod("init");
-        if (init != null) return init.arity();
+        if (initializer != null) return initializer.arity();
         return 0;
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        Profiler profiler = interpreter.profiler;
+        if (profiler == null) {
+            return construct(interpreter, arguments);
+        }
+        profiler.enter(name);
+        try {
+            return construct(interpreter, arguments);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    private Instance construct(Interpreter interpreter, List<Object> arguments) {
         Instance instance = new Instance(this);
-        Function init = findMethod("init");
-        if (init != null) {
-            init.bind(instance).call(interpreter, arguments);
+        if (initializer != null) {
+            initializer.invoke(interpreter, instance, arguments);
         }
         return instance;
     }
 
+    public Function findMethod(Symbol name) {
+        return this.methods.get(name);
+    }
+
+    // By name from host, no script has such a method if the symbol doesn't exist yet
     public Function findMethod(String name) {
-        if (this.methods == null) {
-            return null;
-        }
-        Function method = this.methods.get(name);
-        if (method == null && this.superclass != null) {
-            method = this.superclass.findMethod(name);
-        }
-        return method;
+        Symbol symbol = Symbol.find(name);
+        return symbol == null ? null : findMethod(symbol);
     }
 
     public String getName() {
-        return name;
+        return name.lexeme;
+    }
+
+    public Shape getShape() {
+        return shape;
     }
 }
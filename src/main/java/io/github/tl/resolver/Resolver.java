@@ -2,33 +2,35 @@ package main.java.io.github.tl.resolver;
 
 import main.java.io.github.tl.ast.Expr;
 import main.java.io.github.tl.ast.Stmt;
-import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.error.ErrorReporter;
 import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.symbol.Symbol;
+import main.java.io.github.tl.symbol.SymbolMap;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 
-import static main.java.io.github.tl.TinyLanguage.error;
-
 public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    // Every local scope maps a variable name to its slot
+    private final Stack<SymbolMap<Integer>> scopes = new Stack<>();
 
     private FunctionType currentFunctionType = FunctionType.NONE;
 
     private ClassType currentClassType = ClassType.NONE;
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    private final ErrorReporter reporter;
+
+    public Resolver(ErrorReporter reporter) {
+        this.reporter = reporter;
     }
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        expr.depth = resolveLocal(expr.name);
+        if (expr.depth != -1) {
+            expr.slot = slotAt(expr.depth, expr.name);
+        }
 
         return null;
     }
@@ -64,6 +66,21 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
+    @Override
+    public Object visitSetIndexExpr(Expr.SetIndex expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        resolve(expr.value);
+        return null;
+    }
+
     @Override
     public Object visitLogicalExpr(Expr.Logical expr) {
         resolve(expr.left);
@@ -86,7 +103,7 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        resolveLocal(expr, expr.keyword);
+        expr.depth = resolveLocal(expr.keyword);
         return null;
     }
 
@@ -97,7 +114,7 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         } else if (this.currentClassType != ClassType.SUBCLASS) {
             error(expr.keyword, "Can't use 'super' in a class with no superclass.");
         }
-        resolveLocal(expr, expr.keyword);
+        expr.depth = resolveLocal(expr.keyword);
         return null;
     }
 
@@ -118,7 +135,10 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        resolveLocal(expr, expr.name);
+        expr.depth = resolveLocal(expr.name);
+        if (expr.depth != -1) {
+            expr.slot = slotAt(expr.depth, expr.name);
+        }
 
         return null;
     }
@@ -142,12 +162,28 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        // Nothing to scope, nor an environment to make for each run of a loop body
+        if (!declares(stmt.statements)) {
+            resolve(stmt.statements);
+            stmt.locals = -1;
+            return null;
+        }
         beginScope();
         resolve(stmt.statements);
+        stmt.locals = scopes.peek().size();
         endScope();
         return null;
     }
 
+    private static boolean declares(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
         resolve(stmt.expression);
@@ -156,8 +192,7 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        declare(stmt.name);
-        define(stmt.name);
+        stmt.slot = declare(stmt.name);
 
         resolveFunction(stmt, FunctionType.FUNCTION);
         return null;
@@ -166,9 +201,9 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitClassStmt(Stmt.Class stmt) {
         this.currentClassType = ClassType.CLASS;
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
 
-        if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
+        if (stmt.superclass != null && stmt.name.symbol == stmt.superclass.name.symbol) {
             error(stmt.superclass.name, "A class can't inherit from itself.");
         }
 
@@ -179,15 +214,12 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         if (stmt.superclass != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.peek().put(Symbol.SUPER, 0);
         }
 
-        beginScope();
-        scopes.peek().put("this", true);
-
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
-            if (method.name.lexeme.equals("init")) {
+            if (method.name.symbol == Symbol.INIT) {
                 declaration = FunctionType.INITIALIZER;
             }
             resolveFunction(method, declaration);
@@ -197,9 +229,6 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             endScope();
         }
 
-        endScope();
-
-        define(stmt.name);
         this.currentClassType = ClassType.NONE;
         return null;
     }
@@ -220,43 +249,56 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         resolve(stmt.value);
+        markTail(stmt.value);
         return null;
     }
 
+    // A call whose value is returned as it is, the caller's frame can be left before it runs
+    private void markTail(Expr value) {
+        while (value instanceof Expr.Grouping) {
+            value = ((Expr.Grouping) value).expression;
+        }
+        if (value instanceof Expr.Call) {
+            ((Expr.Call) value).tail = true;
+        }
+    }
+
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
-        define(stmt.name);
         return null;
     }
 
     //region resolve functions
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+    // Return the slot of the new variable, -1 for global variable
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return -1;
 
-        Map<String, Boolean> scope = scopes.peek();
-        if (scope.containsKey(name.lexeme)) {
+        SymbolMap<Integer> scope = scopes.peek();
+        if (scope.containsKey(name.symbol)) {
             error(name, "Already variable with this name in this scope.");
+            return scope.get(name.symbol);
         }
-        scope.put(name.lexeme, false);
-    }
-
-    private void define(Token name) {
-        if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        int slot = scope.size();
+        scope.put(name.symbol, slot);
+        return slot;
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        scopes.push(new SymbolMap<>());
     }
 
     private void endScope() {
         scopes.pop();
     }
 
+    private void error(Token token, String message) {
+        reporter.error(token, message);
+    }
+
     public void resolve(List<Stmt> statements) {
         for (Stmt statement : statements) {
             resolve(statement);
@@ -271,13 +313,18 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         expr.accept(this);
     }
 
-    private void resolveLocal(Expr expr, Token name) {
+    // Return the distance to the scope declaring the variable, -1 for global variable
+    private int resolveLocal(Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
+            if (scopes.get(i).containsKey(name.symbol)) {
+                return scopes.size() - 1 - i;
             }
         }
+        return -1;
+    }
+
+    private int slotAt(int depth, Token name) {
+        return scopes.get(scopes.size() - 1 - depth).get(name.symbol);
     }
 
     private void resolveFunction(Stmt.Function function, FunctionType functionType) {
@@ -285,11 +332,15 @@ public class Resolver implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         this.currentFunctionType = functionType;
 
         beginScope();
+        // Receiver of method takes the first slot of its own scope
+        if (functionType == FunctionType.METHOD || functionType == FunctionType.INITIALIZER) {
+            scopes.peek().put(Symbol.THIS, 0);
+        }
         for (Token param : function.params) {
             declare(param);
-            define(param);
         }
         resolve(function.body);
+        function.locals = scopes.peek().size();
         endScope();
 
         this.currentFunctionType = enclosingFunction;
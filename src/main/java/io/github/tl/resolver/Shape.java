@@ -0,0 +1,48 @@
+package main.java.io.github.tl.resolver;
+
+import main.java.io.github.tl.symbol.Symbol;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Layout of the fields of an instance, shared by every instance which got the same fields in the same order.
+// Shapes form a tree rooted at its class declaration, adding a field moves an instance to a child shape.
+// The tree only grows and is shared by isolates running on other threads.
+public class Shape {
+    private final Shape parent;
+
+    private final Symbol name;
+
+    // Position of the newest field, the others are found in parents
+    private final int index;
+
+    private final Map<Symbol, Shape> transitions = new ConcurrentHashMap<>();
+
+    // Root shape of the class, without any field
+    public Shape() {
+        this(null, null, -1);
+    }
+
+    private Shape(Shape parent, Symbol name, int index) {
+        this.parent = parent;
+        this.name = name;
+        this.index = index;
+    }
+
+    public int size() {
+        return index + 1;
+    }
+
+    public int indexOf(Symbol name) {
+        for (Shape shape = this; shape.parent != null; shape = shape.parent) {
+            if (shape.name == name) {
+                return shape.index;
+            }
+        }
+        return -1;
+    }
+
+    public Shape addField(Symbol name) {
+        return transitions.computeIfAbsent(name, key -> new Shape(this, key, index + 1));
+    }
+}
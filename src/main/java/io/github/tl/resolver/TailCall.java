@@ -0,0 +1,16 @@
+package main.java.io.github.tl.resolver;
+
+import java.util.List;
+
+// Call in tail position, returned instead of made and run by the invoke the caller was running in
+public final class TailCall {
+    final Function function;
+    final Instance receiver;
+    final List<Object> arguments;
+
+    TailCall(Function function, Instance receiver, List<Object> arguments) {
+        this.function = function;
+        this.receiver = receiver;
+        this.arguments = arguments;
+    }
+}
@@ -0,0 +1,43 @@
+package main.java.io.github.tl.scan;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// UTF-8 source read straight from a buffer, usually a memory-mapped file, without decoding it as a whole.
+// Characters are single bytes: every token delimiter is ASCII and bytes of multibyte characters never match one,
+// so only lexemes cut out of the source are decoded.
+public class ByteSource implements CharSequence {
+    private final ByteBuffer bytes;
+
+    // Lexemes are copied out through here before decoding
+    private byte[] scratch = new byte[64];
+
+    public ByteSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        bytes.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+}
@@ -1,6 +1,6 @@
 package main.java.io.github.tl.scan;
 
-import main.java.io.github.tl.TinyLanguage;
+import main.java.io.github.tl.error.ErrorReporter;
 import main.java.io.github.tl.error.ScanError;
 
 import java.util.ArrayList;
@@ -11,9 +11,13 @@ import java.util.Map;
 import static main.java.io.github.tl.scan.TokenType.*;
 import static main.java.io.github.tl.utils.Character.*;
 
+// Tokens can be scanned all at once, or pulled one by one while parsing so they are never held together.
 public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final CharSequence source;
+    private final ErrorReporter reporter;
+
+    private Token token;        // Token produced by the last scanned lexeme
+    private TokenBuffer buffer; // Where tokens go instead, when scanning into columns
 
     private int start = 0;      // The first character in lexeme
     private int current = 0;    // Current character index in source file
@@ -42,29 +46,73 @@ public class Scanner {
         keywords.put("while",  WHILE);
     }
 
-    public Scanner(String source) {
+    public Scanner(CharSequence source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
     }
 
-    private static void error(int line, String message) {
-        TinyLanguage.error(line, message);
+    private void error(int line, String message) {
+        reporter.error(line, message);
         throw new ScanError();
     }
 
     //region token scanner part
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
         try {
-            while (!isAtEnd()) {
-                start = current;
-                scanToken();
-            }
+            Token token;
+            do {
+                token = next();
+                tokens.add(token);
+            } while (token.type != EOF);
         } catch (ScanError e) {
             return null;
         }
-        tokens.add(new Token(EOF, "", null, line));
         return tokens;
     }
 
+    // All tokens scanned ahead into columns, null if any scan error
+    public TokenBuffer scanBuffer() {
+        buffer = new TokenBuffer(source, null);
+        try {
+            while (scan()) ;
+        } catch (ScanError e) {
+            return null;
+        }
+        return buffer;
+    }
+
+    // Tokens scanned only as the parser reaches them, keeping a small window.
+    // A scan error is thrown through the parser once it is reported.
+    public TokenBuffer stream() {
+        buffer = new TokenBuffer(source, this);
+        return buffer;
+    }
+
+    // Scan the next token into buffer, false once that is EOF
+    boolean scan() {
+        int end = buffer.end();
+        while (buffer.end() == end && !isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        if (buffer.end() != end) {
+            return true;
+        }
+        buffer.addName(EOF, current, 0, line, buffer.intern(current, current));
+        return false;
+    }
+
+    // Scan up to the next token, skipping whitespace and comments. Throws ScanError once it is reported.
+    public Token next() {
+        token = null;
+        while (token == null && !isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        return token != null ? token : new Token(EOF, "", null, line);
+    }
+
     private void scanToken() {
         char c = advance();
         switch (c) {
@@ -73,6 +121,8 @@ public class Scanner {
             case ')': addToken(RIGHT_PAREN); break;
             case '{': addToken(LEFT_BRACE); break;
             case '}': addToken(RIGHT_BRACE); break;
+            case '[': addToken(LEFT_BRACKET); break;
+            case ']': addToken(RIGHT_BRACKET); break;
             case ',': addToken(COMMA); break;
             case '.': addToken(DOT); break;
             case '-': addToken(MINUS); break;
@@ -165,7 +215,13 @@ public class Scanner {
     //region difficult handling tokens
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
+        if (buffer != null) {
+            int name = buffer.intern(start, current);
+            TokenType type = keywords.getOrDefault(buffer.name(name), IDENTIFIER);
+            buffer.addName(type, start, current - start, line, name);
+            return;
+        }
+        String text = substring(start, current);
         TokenType type = keywords.get(text);
         if (type == null) type = IDENTIFIER;
         addToken(type);
@@ -183,7 +239,7 @@ public class Scanner {
         }
 
         addToken(NUMBER,
-                Double.parseDouble(source.substring(start, current)));
+                Double.parseDouble(substring(start, current)));
     }
 
     private void string(char c) {
@@ -201,8 +257,8 @@ public class Scanner {
         // The closing " or '.
         advance();
         // Trim the surrounding quotes
-        // And add to tokens array
-        String value = source.substring(start + 1, current - 1);
+        // And add to tokens array, equal literals interned into one string like names are
+        String value = buffer != null ? buffer.name(buffer.intern(start + 1, current - 1)) : substring(start + 1, current - 1);
         addToken(STRING, value);
     }
 
@@ -229,8 +285,20 @@ public class Scanner {
     }
 
     private void addToken(TokenType tokenType, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(tokenType, text, literal, line));
+        if (buffer != null) {
+            if (literal != null) {
+                buffer.addLiteral(tokenType, start, current - start, line, literal);
+            } else {
+                buffer.addName(tokenType, start, current - start, line, buffer.intern(start, current));
+            }
+            return;
+        }
+        String text = substring(start, current);
+        token = new Token(tokenType, text, literal, line);
+    }
+
+    private String substring(int start, int end) {
+        return source.subSequence(start, end).toString();
     }
     //endregion
 }
@@ -1,16 +1,30 @@
 package main.java.io.github.tl.scan;
 
+import main.java.io.github.tl.symbol.Symbol;
+
 public class Token {
     public final TokenType type;
     public final String lexeme;
     public final Object literal;
     public final int line;
+    // Interned lexeme of identifier, this and super, null for other tokens
+    public final Symbol symbol;
 
     public Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, literal, line, isName(type) ? Symbol.of(lexeme) : null);
+    }
+
+    public Token(TokenType type, String lexeme, Object literal, int line, Symbol symbol) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = symbol;
+    }
+
+    // Tokens which name something looked up at runtime
+    public static boolean isName(TokenType type) {
+        return type == TokenType.IDENTIFIER || type == TokenType.THIS || type == TokenType.SUPER;
     }
 
     public String toString() {
@@ -0,0 +1,264 @@
+package main.java.io.github.tl.scan;
+
+import main.java.io.github.tl.symbol.Symbol;
+
+import java.util.Arrays;
+
+import static main.java.io.github.tl.scan.TokenType.*;
+
+// Scanned tokens kept as columns of primitive arrays instead of one object per token.
+// A Token is only made when the parser asks for one. Lexemes of identifiers, keywords and punctuation
+// are interned once while scanning, names also into symbols. The lexemes of literals are only cut out of source then.
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    // Tokens held at most while streaming, far more than the parser looks ahead
+    private static final int WINDOW = 64;
+
+    private final CharSequence source;
+
+    // Scans more tokens on demand while streaming, null once all of them are scanned
+    private Scanner scanner;
+    private final boolean streaming;
+
+    //region columns
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    // Index into values for numbers and strings, into names for the rest
+    private int[] literals;
+    //endregion
+
+    private Object[] values = new Object[16];
+    private int valueCount = 0;
+
+    //region interned names
+    private String[] names = new String[16];
+    // Symbol of the names used as one, null for keywords and punctuation
+    private Symbol[] symbols = new Symbol[16];
+    private int[] hashes = new int[16];
+    private int nameCount = 0;
+    // Open addressing by hash, holds name index plus one
+    private int[] table = new int[32];
+    //endregion
+
+    private int offset = 0;     // Index of the first token held, earlier ones are dropped while streaming
+    private int size = 0;
+
+    // The last token made, parser asks for the same one a few times in a row
+    private int made = -1;
+    private Token token;
+
+    TokenBuffer(CharSequence source, Scanner scanner) {
+        this.source = source;
+        this.scanner = scanner;
+        this.streaming = scanner != null;
+        int capacity = streaming ? WINDOW : Math.max(16, source.length() / 4);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.literals = new int[capacity];
+    }
+
+    //region reading by index
+    public TokenType type(int index) {
+        return TYPES[types[slot(index)]];
+    }
+
+    // Literal value of number and string
+    public Object literal(int index) {
+        int slot = slot(index);
+        byte type = types[slot];
+        if (type == NUMBER.ordinal() || type == STRING.ordinal()) {
+            return values[literals[slot]];
+        }
+        return null;
+    }
+
+    public Token token(int index) {
+        int slot = slot(index);
+        if (slot + offset != made) {
+            TokenType type = TYPES[types[slot]];
+            Object literal = literal(index);
+            if (literal == null) {
+                int name = literals[slot];
+                token = new Token(type, names[name], null, lines[slot], Token.isName(type) ? symbols[name] : null);
+            } else {
+                String lexeme = source.subSequence(starts[slot], starts[slot] + lengths[slot]).toString();
+                token = new Token(type, lexeme, literal, lines[slot], null);
+            }
+            made = slot + offset;
+        }
+        return token;
+    }
+
+    // Index past the last token scanned so far
+    int end() {
+        return offset + size;
+    }
+
+    private int slot(int index) {
+        while (index >= end() && scanner != null) {
+            if (!scanner.scan()) {
+                scanner = null;
+            }
+        }
+        // Anything past the end is EOF
+        if (index >= end()) {
+            index = end() - 1;
+        }
+        return index - offset;
+    }
+    //endregion
+
+    //region filled by scanner
+    // Number or string with its literal value
+    void addLiteral(TokenType type, int start, int length, int line, Object literal) {
+        makeRoom();
+        put(type, start, length, line, addValue(literal));
+    }
+
+    // Any other token, with the index of its interned lexeme
+    void addName(TokenType type, int start, int length, int line, int name) {
+        if (Token.isName(type) && symbols[name] == null) {
+            symbols[name] = Symbol.of(names[name]);
+        }
+        makeRoom();
+        put(type, start, length, line, name);
+    }
+
+    private void makeRoom() {
+        if (size == types.length) {
+            if (streaming) {
+                compact();
+            } else {
+                grow();
+            }
+        }
+    }
+
+    private void put(TokenType type, int start, int length, int line, int literal) {
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        literals[size] = literal;
+        size++;
+    }
+
+    private int addValue(Object value) {
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount * 2);
+        }
+        values[valueCount] = value;
+        return valueCount++;
+    }
+
+    // Index of the name spelled by source between start and end, added the first time it is seen
+    int intern(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = table[i] - 1;
+            if (entry < 0) {
+                break;
+            }
+            if (hashes[entry] == hash && spells(names[entry], start, end)) {
+                return entry;
+            }
+        }
+
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+            symbols = Arrays.copyOf(symbols, nameCount * 2);
+            hashes = Arrays.copyOf(hashes, nameCount * 2);
+        }
+        names[nameCount] = source.subSequence(start, end).toString();
+        hashes[nameCount] = hash;
+        nameCount++;
+        // Keep the table at most half full
+        if (nameCount * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(nameCount - 1);
+        }
+        return nameCount - 1;
+    }
+
+    String name(int index) {
+        return names[index];
+    }
+
+    private boolean spells(String name, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < nameCount; i++) {
+            insert(i);
+        }
+    }
+
+    private void insert(int name) {
+        int mask = table.length - 1;
+        int i = hashes[name] & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = name + 1;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        literals = Arrays.copyOf(literals, capacity);
+    }
+
+    // Drop the older half of the window, parser never goes back more than one token
+    private void compact() {
+        int dropped = size / 2;
+        int kept = size - dropped;
+        System.arraycopy(types, dropped, types, 0, kept);
+        System.arraycopy(starts, dropped, starts, 0, kept);
+        System.arraycopy(lengths, dropped, lengths, 0, kept);
+        System.arraycopy(lines, dropped, lines, 0, kept);
+        System.arraycopy(literals, dropped, literals, 0, kept);
+        offset += dropped;
+        size = kept;
+
+        // Values are added in order of tokens, drop the ones before the first kept
+        int first = valueCount;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == NUMBER.ordinal() || types[i] == STRING.ordinal()) {
+                first = literals[i];
+                break;
+            }
+        }
+        System.arraycopy(values, first, values, 0, valueCount - first);
+        Arrays.fill(values, valueCount - first, valueCount, null);
+        valueCount -= first;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == NUMBER.ordinal() || types[i] == STRING.ordinal()) {
+                literals[i] -= first;
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,50 @@
+package main.java.io.github.tl.script;
+
+import main.java.io.github.tl.error.ErrorReporter;
+import main.java.io.github.tl.error.RuntimeError;
+
+import javax.script.ScriptException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+// Keep the first error of script to throw it to host, instead of printing
+class ScriptReporter extends ErrorReporter {
+    private String message = null;
+
+    private int line = -1;
+
+    ScriptReporter() {
+        super(new PrintWriter(Writer.nullWriter()));
+    }
+
+    @Override
+    protected void report(String message, int line) {
+        if (this.message == null) {
+            this.message = message;
+            this.line = line;
+        }
+    }
+
+    // Message of runtime error without the line, which goes into the exception on its own
+    @Override
+    public void runtimeError(RuntimeError error) {
+        report(error.getMessage(), error.token.line);
+        super.runtimeError(error);
+    }
+
+    // Throw the error reported since last reset if any
+    void check(String fileName) throws ScriptException {
+        if (message != null) {
+            ScriptException exception = new ScriptException(message, fileName, line);
+            reset();
+            throw exception;
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        message = null;
+        line = -1;
+    }
+}
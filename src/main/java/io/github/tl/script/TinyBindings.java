@@ -0,0 +1,20 @@
+package main.java.io.github.tl.script;
+
+import main.java.io.github.tl.lib.Rope;
+
+import javax.script.SimpleBindings;
+
+// Engine scope which works as globals of script.
+// Every number of the language is a double, so numbers from host are converted when they are put.
+// Host reads strings, never the ropes the language builds them as.
+public class TinyBindings extends SimpleBindings {
+    @Override
+    public Object put(String name, Object value) {
+        return super.put(name, TinyScriptEngine.fromHost(value));
+    }
+
+    @Override
+    public Object get(Object name) {
+        return Rope.flatten(super.get(name));
+    }
+}
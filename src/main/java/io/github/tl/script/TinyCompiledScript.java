@@ -0,0 +1,30 @@
+package main.java.io.github.tl.script;
+
+import main.java.io.github.tl.Script;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+// Script compiled once by the engine, evaluated in any context without scanning, parsing and resolving again
+public class TinyCompiledScript extends CompiledScript {
+    private final TinyScriptEngine engine;
+
+    private final Script script;
+
+    TinyCompiledScript(TinyScriptEngine engine, Script script) {
+        this.engine = engine;
+        this.script = script;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        return engine.run(script, context);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,225 @@
+package main.java.io.github.tl.script;
+
+import main.java.io.github.tl.Isolate;
+import main.java.io.github.tl.Script;
+import main.java.io.github.tl.error.RuntimeError;
+import main.java.io.github.tl.interpret.Environment;
+import main.java.io.github.tl.resolver.Callable;
+import main.java.io.github.tl.resolver.Function;
+import main.java.io.github.tl.resolver.Instance;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+// Script engine over the interpreter.
+// Engine scope bindings of a context are the globals of scripts evaluated in it.
+public class TinyScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+    private final ScriptEngineFactory factory;
+
+    //region isolate of the last context
+    private ScriptContext lastContext = null;
+    private Bindings lastBindings = null;
+    private Writer lastWriter = null;
+    private ScriptReporter reporter = null;
+    private Isolate isolate = null;
+    //endregion
+
+    TinyScriptEngine(ScriptEngineFactory factory) {
+        this.factory = factory;
+        context.setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new TinyBindings();
+    }
+
+    //region evaluation
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return run(compileScript(script, fileName(context)), context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return new TinyCompiledScript(this, compileScript(script, fileName(context)));
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    private Script compileScript(String source, String fileName) throws ScriptException {
+        ScriptReporter reporter = new ScriptReporter();
+        Script script = Isolate.compile(source, reporter);
+        reporter.check(fileName);
+        return script;
+    }
+
+    // Value of a script is always nil, it has no expression at top level
+    Object run(Script script, ScriptContext context) throws ScriptException {
+        Isolate isolate = isolateOf(context);
+        isolate.run(script);
+        reporter.check(fileName(context));
+        return null;
+    }
+    //endregion
+
+    //region invocation
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        Object function = context.getBindings(ScriptContext.ENGINE_SCOPE).get(name);
+        if (!(function instanceof Callable)) {
+            throw new NoSuchMethodException(name);
+        }
+        Isolate isolate = isolateOf(context);
+        try {
+            return isolate.call((Callable) function, arguments(args));
+        } catch (RuntimeError | IllegalArgumentException error) {
+            throw scriptException(error);
+        }
+    }
+
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args) throws ScriptException, NoSuchMethodException {
+        if (!(thiz instanceof Instance)) {
+            throw new IllegalArgumentException("Only instances of script have methods.");
+        }
+        Instance receiver = (Instance) thiz;
+        Function method = receiver.klass.findMethod(name);
+        if (method == null) {
+            throw new NoSuchMethodException(name);
+        }
+        Isolate isolate = isolateOf(context);
+        try {
+            return isolate.invoke(receiver, method, arguments(args));
+        } catch (RuntimeError | IllegalArgumentException error) {
+            throw scriptException(error);
+        }
+    }
+
+    @Override
+    public <T> T getInterface(Class<T> clasz) {
+        Bindings globals = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        for (Method method : clasz.getMethods()) {
+            if (!(globals.get(method.getName()) instanceof Callable)) {
+                return null;
+            }
+        }
+        return proxy(clasz, (method, args) -> invokeFunction(method.getName(), args));
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> clasz) {
+        if (!(thiz instanceof Instance)) {
+            throw new IllegalArgumentException("Only instances of script implement interfaces.");
+        }
+        for (Method method : clasz.getMethods()) {
+            if (((Instance) thiz).klass.findMethod(method.getName()) == null) {
+                return null;
+            }
+        }
+        return proxy(clasz, (method, args) -> invokeMethod(thiz, method.getName(), args));
+    }
+
+    private interface Invoker {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> clasz, Invoker invoker) {
+        Object proxy = Proxy.newProxyInstance(clasz.getClassLoader(), new Class<?>[]{clasz}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals": return self == args[0];
+                    case "hashCode": return System.identityHashCode(self);
+                    default: return clasz.getName() + " of script";
+                }
+            }
+            return invoker.invoke(method, args == null ? new Object[0] : args);
+        });
+        return clasz.cast(proxy);
+    }
+    //endregion
+
+    //region utils part
+    // Reuse the isolate as long as the context and its bindings and writers stay the same
+    private Isolate isolateOf(ScriptContext context) {
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        Writer writer = context.getWriter();
+        if (context != lastContext || bindings != lastBindings || writer != lastWriter) {
+            PrintWriter out = writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer, true);
+            reporter = new ScriptReporter();
+            isolate = new Isolate(reporter, out, new Environment(bindings), false);
+            lastContext = context;
+            lastBindings = bindings;
+            lastWriter = writer;
+        }
+        return isolate;
+    }
+
+    private static List<Object> arguments(Object[] args) {
+        List<Object> arguments = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            arguments.add(fromHost(arg));
+        }
+        return arguments;
+    }
+
+    // Numbers of the language are all doubles
+    static Object fromHost(Object value) {
+        if (value instanceof Number && !(value instanceof Double)) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
+
+    private ScriptException scriptException(RuntimeException error) {
+        if (error instanceof RuntimeError) {
+            return new ScriptException(error.getMessage(), fileName(context), ((RuntimeError) error).token.line);
+        }
+        return new ScriptException(error.getMessage());
+    }
+
+    private static String fileName(ScriptContext context) {
+        Object fileName = context.getAttribute(ScriptEngine.FILENAME);
+        return fileName == null ? null : fileName.toString();
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        StringWriter source = new StringWriter();
+        try {
+            reader.transferTo(source);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return source.toString();
+    }
+    //endregion
+}
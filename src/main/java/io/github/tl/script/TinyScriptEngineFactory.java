@@ -0,0 +1,85 @@
+package main.java.io.github.tl.script;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+// Entry of the language for javax.script, found through META-INF/services
+public class TinyScriptEngineFactory implements ScriptEngineFactory {
+    private static final String NAME = "Tiny Language";
+
+    private static final String VERSION = "1.0";
+
+    @Override
+    public String getEngineName() {
+        return NAME;
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("tl");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-tl", "text/x-tl");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("tl", "tiny-language", "TinyLanguage");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return NAME;
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE: return getEngineName();
+            case ScriptEngine.ENGINE_VERSION: return getEngineVersion();
+            case ScriptEngine.NAME: return getNames().get(0);
+            case ScriptEngine.LANGUAGE: return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION: return getLanguageVersion();
+        }
+        // Including THREADING, an engine must not be used by two threads at once
+        return null;
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return obj + "." + m + "(" + String.join(", ", args) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        // No escape in string literal
+        return "print \"" + toDisplay + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder();
+        for (String statement : statements) {
+            program.append(statement).append(";\n");
+        }
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new TinyScriptEngine(this);
+    }
+}
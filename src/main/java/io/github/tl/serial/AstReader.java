@@ -0,0 +1,223 @@
+package main.java.io.github.tl.serial;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.scan.Token;
+import main.java.io.github.tl.scan.TokenType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Read a resolved tree written by AstWriter.
+// Malformed input throws FormatError, a truncated one BufferUnderflowException.
+// Counts are checked against the bytes left and slots, depths and sizes against the length of input
+// before anything is allocated by them.
+public class AstReader {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+
+    private String[] strings;
+
+    public static class FormatError extends RuntimeException {
+        FormatError(String message) {
+            super(message);
+        }
+    }
+
+    public AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    public List<Stmt> read() {
+        strings = new String[readCount()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] encoded = new byte[readCount()];
+            in.get(encoded);
+            strings[i] = new String(encoded, StandardCharsets.UTF_8);
+        }
+        List<Stmt> statements = readStmts();
+        if (in.hasRemaining()) {
+            throw new FormatError("Trailing bytes after tree.");
+        }
+        return statements;
+    }
+
+    //region primitives
+    // Every item takes at least a byte, so there can't be more of them than bytes left
+    private int readCount() {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new FormatError("Count " + count + " out of range.");
+        }
+        return count;
+    }
+
+    // Slot, depth or number of locals, -1 when there is none; none can be larger than the input
+    private int readIndex() {
+        int index = in.getInt();
+        if (index < -1 || index > in.limit()) {
+            throw new FormatError("Index " + index + " out of range.");
+        }
+        return index;
+    }
+
+    private String readString() {
+        int index = in.getInt();
+        if (index < 0 || index >= strings.length) {
+            throw new FormatError("String index out of table.");
+        }
+        return strings[index];
+    }
+
+    private Token readToken() {
+        int type = in.get();
+        if (type < 0 || type >= TOKEN_TYPES.length) {
+            throw new FormatError("Unknown token type " + type + ".");
+        }
+        String lexeme = readString();
+        return new Token(TOKEN_TYPES[type], lexeme, null, in.getInt());
+    }
+
+    private List<Token> readTokens() {
+        int size = readCount();
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(readToken());
+        }
+        return tokens;
+    }
+
+    private Object readValue() {
+        byte tag = in.get();
+        switch (tag) {
+            case Tag.NIL: return null;
+            case Tag.TRUE: return true;
+            case Tag.FALSE: return false;
+            case Tag.NUMBER: return in.getDouble();
+            case Tag.STRING: return readString();
+        }
+        throw new FormatError("Unknown value tag " + tag + ".");
+    }
+
+    private List<Expr> readExprs() {
+        int size = readCount();
+        List<Expr> exprs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            exprs.add(readExpr());
+        }
+        return exprs;
+    }
+
+    private List<Stmt> readStmts() {
+        int size = readCount();
+        List<Stmt> stmts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            stmts.add(readStmt());
+        }
+        return stmts;
+    }
+    //endregion
+
+    //region expression part
+    private Expr readExpr() {
+        byte tag = in.get();
+        switch (tag) {
+            case Tag.NULL: return null;
+            case Tag.ASSIGN: {
+                Expr.Assign expr = new Expr.Assign(readToken(), readExpr());
+                expr.depth = readIndex();
+                expr.slot = readIndex();
+                return expr;
+            }
+            case Tag.BINARY: return new Expr.Binary(readExpr(), readToken(), readExpr());
+            case Tag.CALL: {
+                Expr.Call expr = new Expr.Call(readExpr(), readToken(), readExprs());
+                expr.tail = in.get() != 0;
+                return expr;
+            }
+            case Tag.GET: return new Expr.Get(readExpr(), readToken());
+            case Tag.SET: return new Expr.Set(readExpr(), readToken(), readExpr());
+            case Tag.INDEX: return new Expr.Index(readExpr(), readToken(), readExpr());
+            case Tag.SET_INDEX: return new Expr.SetIndex(readExpr(), readToken(), readExpr(), readExpr());
+            case Tag.LOGICAL: return new Expr.Logical(readExpr(), readToken(), readExpr());
+            case Tag.GROUPING: return new Expr.Grouping(readExpr());
+            case Tag.LITERAL: return new Expr.Literal(readValue());
+            case Tag.THIS: {
+                Expr.This expr = new Expr.This(readToken());
+                expr.depth = readIndex();
+                return expr;
+            }
+            case Tag.SUPER: {
+                Expr.Super expr = new Expr.Super(readToken(), readToken());
+                expr.depth = readIndex();
+                return expr;
+            }
+            case Tag.UNARY: return new Expr.Unary(readToken(), readExpr());
+            case Tag.TERNARY:
+                return new Expr.Ternary(readExpr(), readToken(), readExpr(), readToken(), readExpr());
+            case Tag.VARIABLE: {
+                Expr.Variable expr = new Expr.Variable(readToken());
+                expr.depth = readIndex();
+                expr.slot = readIndex();
+                return expr;
+            }
+        }
+        throw new FormatError("Unknown expression tag " + tag + ".");
+    }
+    //endregion
+
+    //region statement part
+    private Stmt readStmt() {
+        byte tag = in.get();
+        switch (tag) {
+            case Tag.NULL: return null;
+            case Tag.IF: return new Stmt.If(readExpr(), readStmt(), readStmt());
+            case Tag.WHILE: return new Stmt.While(readExpr(), readStmt());
+            case Tag.BLOCK: {
+                Stmt.Block stmt = new Stmt.Block(readStmts());
+                stmt.locals = readIndex();
+                return stmt;
+            }
+            case Tag.EXPRESSION: return new Stmt.Expression(readExpr());
+            case Tag.FUNCTION: return readFunction();
+            case Tag.CLASS: {
+                Token name = readToken();
+                Expr superclass = readExpr();
+                if (superclass != null && !(superclass instanceof Expr.Variable)) {
+                    throw new FormatError("Superclass must be a variable.");
+                }
+                int size = readCount();
+                List<Stmt.Function> methods = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    if (in.get() != Tag.FUNCTION) {
+                        throw new FormatError("Method must be a function.");
+                    }
+                    methods.add(readFunction());
+                }
+                Stmt.Class stmt = new Stmt.Class(name, (Expr.Variable) superclass, methods);
+                stmt.slot = readIndex();
+                return stmt;
+            }
+            case Tag.PRINT: return new Stmt.Print(readExpr());
+            case Tag.RETURN: return new Stmt.Return(readToken(), readExpr());
+            case Tag.VAR: {
+                Stmt.Var stmt = new Stmt.Var(readToken(), readExpr());
+                stmt.slot = readIndex();
+                return stmt;
+            }
+        }
+        throw new FormatError("Unknown statement tag " + tag + ".");
+    }
+
+    // Tag already read
+    private Stmt.Function readFunction() {
+        Stmt.Function stmt = new Stmt.Function(readToken(), readTokens(), readStmts());
+        stmt.slot = readIndex();
+        stmt.locals = readIndex();
+        return stmt;
+    }
+    //endregion
+}
@@ -0,0 +1,334 @@
+package main.java.io.github.tl.serial;
+
+import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.ast.Stmt;
+import main.java.io.github.tl.scan.Token;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Write a resolved tree in binary, read back by AstReader.
+// Every node is a tag followed by its fields in declaration order, resolved slots and depths included.
+// Strings are written once in a table in front of the tree and referred by index.
+public class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream(tree);
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+    public byte[] write(List<Stmt> statements) {
+        try {
+            writeStmts(statements);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream table = new DataOutputStream(bytes);
+            table.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                table.writeInt(encoded.length);
+                table.write(encoded);
+            }
+            tree.writeTo(table);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Only written to memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //region primitives
+    private void writeString(String string) throws IOException {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        out.writeInt(index);
+    }
+
+    private void writeToken(Token token) throws IOException {
+        out.writeByte(token.type.ordinal());
+        writeString(token.lexeme);
+        out.writeInt(token.line);
+    }
+
+    private void writeTokens(List<Token> tokens) throws IOException {
+        out.writeInt(tokens.size());
+        for (Token token : tokens) {
+            writeToken(token);
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(Tag.NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((boolean) value ? Tag.TRUE : Tag.FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(Tag.NUMBER);
+            out.writeDouble((double) value);
+        } else {
+            out.writeByte(Tag.STRING);
+            writeString((String) value);
+        }
+    }
+
+    private void writeExpr(Expr expr) throws IOException {
+        if (expr == null) {
+            out.writeByte(Tag.NULL);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    private void writeExprs(List<Expr> exprs) throws IOException {
+        out.writeInt(exprs.size());
+        for (Expr expr : exprs) {
+            writeExpr(expr);
+        }
+    }
+
+    private void writeStmt(Stmt stmt) throws IOException {
+        if (stmt == null) {
+            out.writeByte(Tag.NULL);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void writeStmts(List<? extends Stmt> stmts) throws IOException {
+        out.writeInt(stmts.size());
+        for (Stmt stmt : stmts) {
+            writeStmt(stmt);
+        }
+    }
+
+    private interface Fields {
+        void write() throws IOException;
+    }
+
+    // Visitors can't throw checked exceptions
+    private Void node(byte tag, Fields fields) {
+        try {
+            out.writeByte(tag);
+            fields.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+    //endregion
+
+    //region expression part
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        return node(Tag.ASSIGN, () -> {
+            writeToken(expr.name);
+            writeExpr(expr.value);
+            out.writeInt(expr.depth);
+            out.writeInt(expr.slot);
+        });
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        return node(Tag.BINARY, () -> {
+            writeExpr(expr.left);
+            writeToken(expr.operator);
+            writeExpr(expr.right);
+        });
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        return node(Tag.CALL, () -> {
+            writeExpr(expr.callee);
+            writeToken(expr.paren);
+            writeExprs(expr.arguments);
+            out.writeBoolean(expr.tail);
+        });
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        return node(Tag.GET, () -> {
+            writeExpr(expr.object);
+            writeToken(expr.name);
+        });
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        return node(Tag.SET, () -> {
+            writeExpr(expr.object);
+            writeToken(expr.name);
+            writeExpr(expr.value);
+        });
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        return node(Tag.INDEX, () -> {
+            writeExpr(expr.object);
+            writeToken(expr.bracket);
+            writeExpr(expr.index);
+        });
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        return node(Tag.SET_INDEX, () -> {
+            writeExpr(expr.object);
+            writeToken(expr.bracket);
+            writeExpr(expr.index);
+            writeExpr(expr.value);
+        });
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        return node(Tag.LOGICAL, () -> {
+            writeExpr(expr.left);
+            writeToken(expr.operator);
+            writeExpr(expr.right);
+        });
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        return node(Tag.GROUPING, () -> writeExpr(expr.expression));
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return node(Tag.LITERAL, () -> writeValue(expr.value));
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        return node(Tag.THIS, () -> {
+            writeToken(expr.keyword);
+            out.writeInt(expr.depth);
+        });
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        return node(Tag.SUPER, () -> {
+            writeToken(expr.keyword);
+            writeToken(expr.method);
+            out.writeInt(expr.depth);
+        });
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        return node(Tag.UNARY, () -> {
+            writeToken(expr.operator);
+            writeExpr(expr.right);
+        });
+    }
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        return node(Tag.TERNARY, () -> {
+            writeExpr(expr.condition);
+            writeToken(expr.question);
+            writeExpr(expr.left);
+            writeToken(expr.colon);
+            writeExpr(expr.right);
+        });
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        return node(Tag.VARIABLE, () -> {
+            writeToken(expr.name);
+            out.writeInt(expr.depth);
+            out.writeInt(expr.slot);
+        });
+    }
+    //endregion
+
+    //region statement part
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        return node(Tag.IF, () -> {
+            writeExpr(stmt.condition);
+            writeStmt(stmt.thenBranch);
+            writeStmt(stmt.elseBranch);
+        });
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        return node(Tag.WHILE, () -> {
+            writeExpr(stmt.condition);
+            writeStmt(stmt.body);
+        });
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        return node(Tag.BLOCK, () -> {
+            writeStmts(stmt.statements);
+            out.writeInt(stmt.locals);
+        });
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        return node(Tag.EXPRESSION, () -> writeExpr(stmt.expression));
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        return node(Tag.FUNCTION, () -> {
+            writeToken(stmt.name);
+            writeTokens(stmt.params);
+            writeStmts(stmt.body);
+            out.writeInt(stmt.slot);
+            out.writeInt(stmt.locals);
+        });
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        return node(Tag.CLASS, () -> {
+            writeToken(stmt.name);
+            writeExpr(stmt.superclass);
+            writeStmts(stmt.methods);
+            out.writeInt(stmt.slot);
+        });
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        return node(Tag.PRINT, () -> writeExpr(stmt.expression));
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        return node(Tag.RETURN, () -> {
+            writeToken(stmt.keyword);
+            writeExpr(stmt.value);
+        });
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        return node(Tag.VAR, () -> {
+            writeToken(stmt.name);
+            writeExpr(stmt.initializer);
+            out.writeInt(stmt.slot);
+        });
+    }
+    //endregion
+}
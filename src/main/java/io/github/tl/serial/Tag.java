@@ -0,0 +1,48 @@
+package main.java.io.github.tl.serial;
+
+// Tags of nodes and values in the binary tree
+class Tag {
+    // Missing optional node, like else branch
+    static final byte NULL = 0;
+
+    //region expressions
+    static final byte ASSIGN = 1;
+    static final byte BINARY = 2;
+    static final byte CALL = 3;
+    static final byte GET = 4;
+    static final byte SET = 5;
+    static final byte LOGICAL = 6;
+    static final byte GROUPING = 7;
+    static final byte LITERAL = 8;
+    static final byte THIS = 9;
+    static final byte SUPER = 10;
+    static final byte UNARY = 11;
+    static final byte TERNARY = 12;
+    static final byte VARIABLE = 13;
+    static final byte INDEX = 14;
+    static final byte SET_INDEX = 15;
+    //endregion
+
+    //region statements
+    static final byte IF = 20;
+    static final byte WHILE = 21;
+    static final byte BLOCK = 22;
+    static final byte EXPRESSION = 23;
+    static final byte FUNCTION = 24;
+    static final byte CLASS = 25;
+    static final byte PRINT = 26;
+    static final byte RETURN = 27;
+    static final byte VAR = 28;
+    //endregion
+
+    //region literal values
+    static final byte NIL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte NUMBER = 3;
+    static final byte STRING = 4;
+    //endregion
+
+    private Tag() {
+    }
+}
@@ -0,0 +1,60 @@
+package main.java.io.github.tl.symbol;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Name of variable, property or method, interned once for the whole process.
+// Symbols are compared by identity and keyed by their dense id, so names are never hashed or compared again
+// after scanning. Shared by isolates on any thread, just like the scripts holding them.
+public final class Symbol {
+    private static final ConcurrentHashMap<String, Symbol> table = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    //region names the language itself looks up
+    public static final Symbol THIS = of("this");
+    public static final Symbol SUPER = of("super");
+    public static final Symbol INIT = of("init");
+    //endregion
+
+    public final String name;
+
+    // Dense from 0, in order of interning
+    public final int id;
+
+    private final int hash;
+
+    private Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+        this.hash = name.hashCode();
+    }
+
+    public static Symbol of(String name) {
+        Symbol symbol = table.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+        return table.computeIfAbsent(name, key -> new Symbol(key, count.getAndIncrement()));
+    }
+
+    // Null if no script has used the name, for lookups from host which shouldn't grow the table
+    public static Symbol find(String name) {
+        return table.get(name);
+    }
+
+    // Upper bound of ids given so far
+    public static int count() {
+        return count.get();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,90 @@
+package main.java.io.github.tl.symbol;
+
+// Map from symbol to value keyed by the id of symbol, open addressing over plain arrays.
+// Not synchronized, maps shared by threads must not change after they are published.
+public class SymbolMap<V> {
+    // Id plus one, 0 for an empty slot
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    public SymbolMap() {
+        this(8);
+    }
+
+    private SymbolMap(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+
+    public SymbolMap(SymbolMap<? extends V> other) {
+        this(other.keys.length);
+        putAll(other);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Symbol symbol) {
+        int slot = find(symbol.id);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(Symbol symbol) {
+        return find(symbol.id) >= 0;
+    }
+
+    public void put(Symbol symbol, V value) {
+        put(symbol.id, value);
+    }
+
+    public void putAll(SymbolMap<? extends V> other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != 0) {
+                put(other.keys[i] - 1, other.values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int find(int id) {
+        int mask = keys.length - 1;
+        for (int i = id & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == id + 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void put(int id, Object value) {
+        int mask = keys.length - 1;
+        int i = id & mask;
+        while (keys[i] != 0 && keys[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = id + 1;
+            size++;
+        }
+        values[i] = value;
+        // Keep it at most half full
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i] - 1, oldValues[i]);
+            }
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package main.java.io.github.tl.tools;
 
 import main.java.io.github.tl.ast.Expr;
+import main.java.io.github.tl.ast.Stmt;
 import main.java.io.github.tl.scan.Token;
 import main.java.io.github.tl.scan.TokenType;
 
-public class AstPrinter implements Expr.Visitor<String>  {
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
     public static void main(String[] args) {
         Expr expression = new Expr.Binary(
                 new Expr.Unary(
@@ -21,22 +25,50 @@ public class AstPrinter implements Expr.Visitor<String>  {
         return expr == null? "" : expr.accept(this);
     }
 
-    private String parenthesize(String name, Expr... exprs) {
+    // One line for each statement
+    public String print(List<Stmt> statements) {
+        StringBuilder builder = new StringBuilder();
+        for (Stmt statement : statements) {
+            builder.append(statement.accept(this)).append("\n");
+        }
+        return builder.toString();
+    }
+
+    // Parts are expressions, statements, lists of them or plain text, missing ones are skipped
+    private String parenthesize(String name, Object... parts) {
         StringBuilder builder = new StringBuilder();
 
         builder.append("(").append(name);
-        for (Expr expr : exprs) {
-            builder.append(" ");
-            builder.append(expr.accept(this));
+        for (Object part : parts) {
+            if (part instanceof List) {
+                for (Object element : (List<?>) part) {
+                    append(builder, element);
+                }
+            } else if (part != null) {
+                append(builder, part);
+            }
         }
         builder.append(")");
 
         return builder.toString();
     }
 
+    private void append(StringBuilder builder, Object part) {
+        builder.append(" ");
+        if (part instanceof Expr) {
+            builder.append(((Expr) part).accept(this));
+        } else if (part instanceof Stmt) {
+            builder.append(((Stmt) part).accept(this));
+        } else if (part instanceof Token) {
+            builder.append(((Token) part).lexeme);
+        } else {
+            builder.append(part);
+        }
+    }
+
     @Override
     public String visitAssignExpr(Expr.Assign expr) {
-        return parenthesize(expr.name.lexeme);
+        return parenthesize("=", expr.name, expr.value);
     }
 
     @Override
@@ -46,17 +78,27 @@ public class AstPrinter implements Expr.Visitor<String>  {
 
     @Override
     public String visitCallExpr(Expr.Call expr) {
-        return null;
+        return parenthesize("call", expr.callee, expr.arguments);
     }
 
     @Override
     public String visitGetExpr(Expr.Get expr) {
-        return null;
+        return parenthesize(".", expr.object, expr.name);
     }
 
     @Override
     public String visitSetExpr(Expr.Set expr) {
-        return null;
+        return parenthesize("=", parenthesize(".", expr.object, expr.name), expr.value);
+    }
+
+    @Override
+    public String visitIndexExpr(Expr.Index expr) {
+        return parenthesize("[]", expr.object, expr.index);
+    }
+
+    @Override
+    public String visitSetIndexExpr(Expr.SetIndex expr) {
+        return parenthesize("=", parenthesize("[]", expr.object, expr.index), expr.value);
     }
 
     @Override
@@ -71,18 +113,19 @@ public class AstPrinter implements Expr.Visitor<String>  {
 
     @Override
     public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr.value.toString() == null) return "nil";
+        if (expr.value == null) return "nil";
+        if (expr.value instanceof String) return "\"" + expr.value + "\"";
         return expr.value.toString();
     }
 
     @Override
     public String visitThisExpr(Expr.This expr) {
-        return null;
+        return "this";
     }
 
     @Override
     public String visitSuperExpr(Expr.Super expr) {
-        return null;
+        return "super." + expr.method.lexeme;
     }
 
     @Override
@@ -106,4 +149,51 @@ public class AstPrinter implements Expr.Visitor<String>  {
                 rhs +
                 ")";
     }
+
+    @Override
+    public String visitIfStmt(Stmt.If stmt) {
+        return parenthesize("if", stmt.condition, stmt.thenBranch, stmt.elseBranch);
+    }
+
+    @Override
+    public String visitWhileStmt(Stmt.While stmt) {
+        return parenthesize("while", stmt.condition, stmt.body);
+    }
+
+    @Override
+    public String visitBlockStmt(Stmt.Block stmt) {
+        return parenthesize("block", stmt.statements);
+    }
+
+    @Override
+    public String visitExpressionStmt(Stmt.Expression stmt) {
+        return parenthesize(";", stmt.expression);
+    }
+
+    @Override
+    public String visitFunctionStmt(Stmt.Function stmt) {
+        String params = stmt.params.stream().map(param -> param.lexeme).collect(Collectors.joining(" ", "(", ")"));
+        return parenthesize("fun", stmt.name, params, stmt.body);
+    }
+
+    @Override
+    public String visitClassStmt(Stmt.Class stmt) {
+        return parenthesize("class", stmt.name, stmt.superclass == null ? null : "< " + stmt.superclass.name.lexeme,
+                stmt.methods);
+    }
+
+    @Override
+    public String visitPrintStmt(Stmt.Print stmt) {
+        return parenthesize("print", stmt.expression);
+    }
+
+    @Override
+    public String visitReturnStmt(Stmt.Return stmt) {
+        return parenthesize("return", stmt.value);
+    }
+
+    @Override
+    public String visitVarStmt(Stmt.Var stmt) {
+        return parenthesize("var", stmt.name, stmt.initializer);
+    }
 }
@@ -5,8 +5,19 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class GenerateAST {
+    // Runtime types referred by the mutable fields
+    private static final Map<String, String> RUNTIME_TYPES = new TreeMap<>(Map.of(
+            "BinaryNode", "main.java.io.github.tl.interpret.BinaryNode",
+            "CompiledFunction", "main.java.io.github.tl.jit.CompiledFunction",
+            "MethodCache", "main.java.io.github.tl.interpret.MethodCache",
+            "PropertyCache", "main.java.io.github.tl.interpret.PropertyCache",
+            "Shape", "main.java.io.github.tl.resolver.Shape"
+    ));
+
     public static void main(String[] args) throws IOException {
         if (args.length != 1) {
             System.out.println("Usage: generate_ast <output directory>");
@@ -14,32 +25,35 @@ public class GenerateAST {
         }
         String outputDir = args[0];
         // Expression, include field type
+        // Fields after ';' are filled in after parsing, by the resolver or at runtime
         defineAst(outputDir, "Expr", Arrays.asList(
-                "Assign   : Token name, Expr value",
-                "Binary   : Expr left, Token operator, Expr right",
-                "Call     : Expr callee, Token paren, List<Expr> arguments",
-                "Get      : Expr object, Token name",
-                "Set      : Expr object, Token name, Expr value",
+                "Assign   : Token name, Expr value ; int depth = -1, int slot = -1",
+                "Binary   : Expr left, Token operator, Expr right ; BinaryNode node = BinaryNode.UNINITIALIZED",
+                "Call     : Expr callee, Token paren, List<Expr> arguments ; MethodCache methods, boolean tail",
+                "Get      : Expr object, Token name ; PropertyCache cache",
+                "Set      : Expr object, Token name, Expr value ; PropertyCache cache",
+                "Index    : Expr object, Token bracket, Expr index",
+                "SetIndex : Expr object, Token bracket, Expr index, Expr value",
                 "Logical  : Expr left, Token operator, Expr right",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
-                "This     : Token keyword",
-                "Super    : Token keyword, Token method",
+                "This     : Token keyword ; int depth = -1",
+                "Super    : Token keyword, Token method ; int depth = -1",
                 "Unary    : Token operator, Expr right",
                 "Ternary  : Expr condition, Token question, Expr left, Token colon, Expr right",
-                "Variable : Token name"
+                "Variable : Token name ; int depth = -1, int slot = -1"
         ));
         // Statement
         defineAst(outputDir, "Stmt", Arrays.asList(
                 "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
                 "While      : Expr condition, Stmt body",
-                "Block      : List<Stmt> statements",
+                "Block      : List<Stmt> statements ; int locals",
                 "Expression : Expr expression",
-                "Function   : Token name, List<Token> params, List<Stmt> body",
-                "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+                "Function   : Token name, List<Token> params, List<Stmt> body ; int slot = -1, int locals, int calls, CompiledFunction compiled",
+                "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods ; int slot = -1, Shape shape = new Shape()",
                 "Print      : Expr expression",
                 "Return     : Token keyword, Expr value",
-                "Var        : Token name, Expr initializer"
+                "Var        : Token name, Expr initializer ; int slot = -1"
         ));
     }
 
@@ -49,6 +63,11 @@ public class GenerateAST {
 
         writer.println("package main.java.io.github.tl.ast;");
         writer.println();
+        for (Map.Entry<String, String> runtimeType : RUNTIME_TYPES.entrySet()) {
+            if (String.join(",", types).contains(runtimeType.getKey())) {
+                writer.println("import " + runtimeType.getValue() + ";");
+            }
+        }
         writer.println("import main.java.io.github.tl.scan.Token;");
         writer.println();
         writer.println("import java.util.List;");
@@ -60,8 +79,9 @@ public class GenerateAST {
         // The AST classes.
         for (String type : types) {
             String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+            String[] fields = type.split(":")[1].split(";");
+            String resolved = fields.length > 1 ? fields[1].trim() : null;
+            defineType(writer, baseName, className, fields[0].trim(), resolved);
         }
 
         // The base accept() method.
@@ -85,7 +105,8 @@ public class GenerateAST {
         writer.println();
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+    private static void defineType(PrintWriter writer, String baseName, String className,
+                                   String fieldList, String resolvedList) {
         writer.println("  public static class " + className + " extends " + baseName + " {");
 
         // Constructor.
@@ -114,6 +135,13 @@ public class GenerateAST {
             writer.println("    public final " + field + ";");
         }
 
+        // Mutable fields written after parsing.
+        if (resolvedList != null) {
+            for (String field : resolvedList.split(", ")) {
+                writer.println("    public " + field + ";");
+            }
+        }
+
         writer.println("  }");
         writer.println();
     }
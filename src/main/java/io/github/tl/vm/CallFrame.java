@@ -0,0 +1,8 @@
+package main.java.io.github.tl.vm;
+
+// Frames are preallocated and reused, so calls don't allocate
+class CallFrame {
+    Closure closure;
+    int ip;
+    int base;   // Stack slot of the callee, arguments follow it
+}
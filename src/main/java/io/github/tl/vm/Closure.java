@@ -0,0 +1,18 @@
+package main.java.io.github.tl.vm;
+
+import main.java.io.github.tl.compile.Prototype;
+
+public class Closure {
+    final Prototype prototype;
+    final Upvalue[] upvalues;
+
+    Closure(Prototype prototype) {
+        this.prototype = prototype;
+        this.upvalues = new Upvalue[prototype.upvalueCount];
+    }
+
+    @Override
+    public String toString() {
+        return prototype.toString();
+    }
+}
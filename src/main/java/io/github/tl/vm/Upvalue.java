@@ -0,0 +1,14 @@
+package main.java.io.github.tl.vm;
+
+// Variable captured by a closure.
+// It points to a stack slot while open and owns the value after the slot is popped.
+class Upvalue {
+    final int slot;
+    boolean isOpen = true;
+    Object closed;
+    Upvalue next;   // Open upvalues are linked in descending slot order
+
+    Upvalue(int slot) {
+        this.slot = slot;
+    }
+}
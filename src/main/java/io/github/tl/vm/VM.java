@@ -0,0 +1,557 @@
+package main.java.io.github.tl.vm;
+
+import main.java.io.github.tl.compile.OpCode;
+import main.java.io.github.tl.compile.Prototype;
+import main.java.io.github.tl.error.ErrorReporter;
+import main.java.io.github.tl.error.RuntimeError;
+import main.java.io.github.tl.interpret.Interpreter;
+import main.java.io.github.tl.lib.Indexing;
+import main.java.io.github.tl.lib.NativeError;
+import main.java.io.github.tl.lib.NativeFunction;
+import main.java.io.github.tl.lib.NativeRegistry;
+import main.java.io.github.tl.lib.Rope;
+import main.java.io.github.tl.lib.StandardLibrary;
+import main.java.io.github.tl.lib.NativeObject;
+import main.java.io.github.tl.resolver.Callable;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Stack based virtual machine running the bytecode produced by compiler
+public class VM {
+    private static final int FRAMES_MAX = 16384;
+
+    private final Map<String, Object> globals = new HashMap<>();
+
+    private Object[] stack = new Object[256];
+    private int sp = 0;
+
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+
+    private Upvalue openUpvalues = null;
+
+    private final ErrorReporter reporter;
+
+    private final PrintWriter out;
+
+    public VM(ErrorReporter reporter, PrintWriter out) {
+        this.reporter = reporter;
+        this.out = out;
+        define(NativeRegistry.standard());
+        input(StandardLibrary.standardInput());
+    }
+
+    // Lines read by readLine, which flushes the output of this VM before waiting
+    public void input(BufferedReader input) {
+        globals.put("readLine", StandardLibrary.readLine(input, out));
+    }
+
+    // Every native of the registry, as globals
+    public void define(NativeRegistry natives) {
+        globals.putAll(natives.values());
+    }
+
+    public void interpret(Prototype script) {
+        Closure closure = new Closure(script);
+        push(closure);
+        try {
+            pushFrame(closure, 0);
+            run();
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        } finally {
+            Arrays.fill(stack, 0, sp, null);
+            sp = 0;
+            frameCount = 0;
+            openUpvalues = null;
+        }
+    }
+
+    //region dispatch loop
+    private void run() {
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.closure.prototype.code;
+        Object[] constants = frame.closure.prototype.constants;
+        int base = frame.base;
+        int ip = frame.ip;
+
+        while (true) {
+            // Keep the start of instruction for error reporting
+            frame.ip = ip;
+            switch (code[ip++]) {
+                case OpCode.CONSTANT:
+                    push(constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                    ip += 2;
+                    break;
+                case OpCode.NIL: push(null); break;
+                case OpCode.TRUE: push(true); break;
+                case OpCode.FALSE: push(false); break;
+                case OpCode.POP: stack[--sp] = null; break;
+                case OpCode.GET_LOCAL:
+                    push(stack[base + (code[ip++] & 0xff)]);
+                    break;
+                case OpCode.SET_LOCAL:
+                    stack[base + (code[ip++] & 0xff)] = stack[sp - 1];
+                    break;
+                case OpCode.GET_UPVALUE: {
+                    Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+                    push(upvalue.isOpen ? stack[upvalue.slot] : upvalue.closed);
+                    break;
+                }
+                case OpCode.SET_UPVALUE: {
+                    Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+                    if (upvalue.isOpen) {
+                        stack[upvalue.slot] = stack[sp - 1];
+                    } else {
+                        upvalue.closed = stack[sp - 1];
+                    }
+                    break;
+                }
+                case OpCode.GET_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Object value = globals.get(name);
+                    if (value == null && !globals.containsKey(name)) {
+                        throw error(frame, "Undefined variable '" + name + "'.");
+                    }
+                    push(value);
+                    break;
+                }
+                case OpCode.DEFINE_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    globals.put(name, pop());
+                    break;
+                }
+                case OpCode.SET_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    if (!globals.containsKey(name)) {
+                        throw error(frame, "Undefined variable '" + name + "'.");
+                    }
+                    globals.put(name, stack[sp - 1]);
+                    break;
+                }
+                case OpCode.GET_PROPERTY: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    if (stack[sp - 1] instanceof NativeObject) {
+                        Object value = ((NativeObject) stack[sp - 1]).getProperty(name);
+                        if (value == null) {
+                            throw error(frame, "Undefined property '" + name + "'.");
+                        }
+                        stack[sp - 1] = value;
+                        break;
+                    }
+                    if (!(stack[sp - 1] instanceof VmInstance)) {
+                        throw error(frame, "Only instances have properties.");
+                    }
+                    VmInstance instance = (VmInstance) stack[sp - 1];
+                    Object value = instance.fields.get(name);
+                    if (value != null || instance.fields.containsKey(name)) {
+                        stack[sp - 1] = value;
+                        break;
+                    }
+                    stack[sp - 1] = bindMethod(frame, instance, instance.klass, name);
+                    break;
+                }
+                case OpCode.SET_PROPERTY: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    // Object checked by CHECK_INSTANCE
+                    Object value = pop();
+                    ((VmInstance) stack[sp - 1]).fields.put(name, value);
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case OpCode.CHECK_INSTANCE:
+                    if (!(stack[sp - 1] instanceof VmInstance)) {
+                        throw error(frame, "Only instances can set properties.");
+                    }
+                    break;
+                case OpCode.GET_INDEX: {
+                    Object index = pop();
+                    try {
+                        stack[sp - 1] = Indexing.get(stack[sp - 1], index);
+                    } catch (NativeError e) {
+                        throw error(frame, e.getMessage());
+                    }
+                    break;
+                }
+                case OpCode.SET_INDEX: {
+                    Object value = pop();
+                    Object index = pop();
+                    try {
+                        Indexing.set(stack[sp - 1], index, value);
+                    } catch (NativeError e) {
+                        throw error(frame, e.getMessage());
+                    }
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case OpCode.GET_SUPER: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    VmClass superclass = (VmClass) pop();
+                    stack[sp - 1] = bindMethod(frame, stack[sp - 1], superclass, name);
+                    break;
+                }
+                case OpCode.EQUAL: {
+                    Object right = pop();
+                    stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object right = pop();
+                    stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.GREATER:
+                    checkNumberOperands(frame);
+                    stack[sp - 2] = (double) stack[sp - 2] > (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.GREATER_EQUAL:
+                    checkNumberOperands(frame);
+                    stack[sp - 2] = (double) stack[sp - 2] >= (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.LESS:
+                    checkNumberOperands(frame);
+                    stack[sp - 2] = (double) stack[sp - 2] < (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.LESS_EQUAL:
+                    checkNumberOperands(frame);
+                    stack[sp - 2] = (double) stack[sp - 2] <= (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.ADD: {
+                    Object right = pop();
+                    stack[sp - 1] = add(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.SUBTRACT:
+                    checkNumberOperands(frame);
+                    stack[sp - 2] = (double) stack[sp - 2] - (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.MULTIPLY:
+                    checkNumberOperands(frame);
+                    stack[sp - 2] = (double) stack[sp - 2] * (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.DIVIDE:
+                    checkNumberOperands(frame);
+                    if ((double) stack[sp - 1] == 0) {
+                        throw error(frame, "The divisor must not be zero.");
+                    }
+                    stack[sp - 2] = (double) stack[sp - 2] / (double) stack[sp - 1];
+                    stack[--sp] = null;
+                    break;
+                case OpCode.NOT:
+                    stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+                    break;
+                case OpCode.NEGATE:
+                    checkNumberOperand(frame);
+                    stack[sp - 1] = -(double) stack[sp - 1];
+                    break;
+                case OpCode.CHECK_NUMBER:
+                    checkNumberOperand(frame);
+                    break;
+                case OpCode.PRINT:
+                    out.println(Interpreter.stringify(pop()));
+                    break;
+                case OpCode.JUMP:
+                    ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    if (Interpreter.isTruthy(stack[sp - 1])) {
+                        ip += 2;
+                    } else {
+                        ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    }
+                    break;
+                case OpCode.LOOP:
+                    ip += 2 - (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    break;
+                case OpCode.CALL: {
+                    int argCount = code[ip++] & 0xff;
+                    callValue(frame, stack[sp - 1 - argCount], argCount);
+                    // Resume the caller after the operand once callee returns
+                    frame.ip = ip;
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.prototype.code;
+                    constants = frame.closure.prototype.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.TAIL_CALL: {
+                    int argCount = code[ip++] & 0xff;
+                    Closure target = tailTarget(frame, argCount);
+                    if (target != null) {
+                        // Callee and arguments take the place of the caller's, whose frame runs the callee
+                        closeUpvalues(base);
+                        int callee = sp - 1 - argCount;
+                        System.arraycopy(stack, callee, stack, base, argCount + 1);
+                        Arrays.fill(stack, base + argCount + 1, sp, null);
+                        sp = base + argCount + 1;
+                        frame.closure = target;
+                        code = target.prototype.code;
+                        constants = target.prototype.constants;
+                        ip = 0;
+                        break;
+                    }
+                    // Anything else is called as usual, RETURN follows
+                    callValue(frame, stack[sp - 1 - argCount], argCount);
+                    frame.ip = ip;
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.prototype.code;
+                    constants = frame.closure.prototype.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    Prototype prototype = (Prototype) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Closure closure = new Closure(prototype);
+                    for (int i = 0; i < closure.upvalues.length; i++) {
+                        boolean isLocal = code[ip++] == 1;
+                        int index = code[ip++] & 0xff;
+                        closure.upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.closure.upvalues[index];
+                    }
+                    push(closure);
+                    break;
+                }
+                case OpCode.CLOSE_UPVALUE:
+                    closeUpvalues(sp - 1);
+                    stack[--sp] = null;
+                    break;
+                case OpCode.RETURN: {
+                    Object result = pop();
+                    closeUpvalues(base);
+                    frameCount--;
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+                    if (frameCount == 0) {
+                        return;
+                    }
+                    push(result);
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.prototype.code;
+                    constants = frame.closure.prototype.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.CLASS: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    push(new VmClass(name));
+                    break;
+                }
+                case OpCode.INHERIT: {
+                    if (!(stack[sp - 2] instanceof VmClass)) {
+                        throw error(frame, "Superclass must be a class.");
+                    }
+                    VmClass superclass = (VmClass) stack[sp - 2];
+                    VmClass subclass = (VmClass) pop();
+                    subclass.methods.putAll(superclass.methods);
+                    break;
+                }
+                case OpCode.METHOD: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Closure method = (Closure) pop();
+                    ((VmClass) stack[sp - 1]).methods.put(name, method);
+                    break;
+                }
+                default:
+                    throw error(frame, "Unknown opcode " + code[ip - 1] + ".");
+            }
+        }
+    }
+    //endregion
+
+    //region call part
+    private void callValue(CallFrame frame, Object callee, int argCount) {
+        if (callee instanceof Closure) {
+            call((Closure) callee, argCount, frame);
+        } else if (callee instanceof BoundMethod) {
+            BoundMethod bound = (BoundMethod) callee;
+            stack[sp - 1 - argCount] = bound.receiver;
+            call(bound.method, argCount, frame);
+        } else if (callee instanceof VmClass) {
+            VmClass klass = (VmClass) callee;
+            stack[sp - 1 - argCount] = new VmInstance(klass);
+            Closure init = klass.methods.get("init");
+            if (init != null) {
+                call(init, argCount, frame);
+            } else if (argCount != 0) {
+                throw error(frame, "Expected 0 arguments but got " + argCount + ".");
+            }
+        } else if (callee instanceof Callable) {
+            callNative(frame, (Callable) callee, argCount);
+        } else {
+            throw error(frame, "Can only call functions and classes.");
+        }
+    }
+
+    // Closure a tail call can run in the frame of its caller, null if the callee is anything else
+    private Closure tailTarget(CallFrame frame, int argCount) {
+        Object callee = stack[sp - 1 - argCount];
+        Closure closure;
+        if (callee instanceof Closure) {
+            closure = (Closure) callee;
+        } else if (callee instanceof BoundMethod) {
+            BoundMethod bound = (BoundMethod) callee;
+            stack[sp - 1 - argCount] = bound.receiver;
+            closure = bound.method;
+        } else {
+            return null;
+        }
+        if (closure.prototype.arity != argCount) {
+            throw error(frame, "Expected " + closure.prototype.arity + " arguments but got " + argCount + ".");
+        }
+        return closure;
+    }
+
+    // Runs right away without a frame, the result replaces callee and arguments on stack
+    private void callNative(CallFrame frame, Callable callee, int argCount) {
+        if (callee.arity() != argCount) {
+            throw error(frame, "Expected " + callee.arity() + " arguments but got " + argCount + ".");
+        }
+        Object result;
+        try {
+            result = callee instanceof NativeFunction && argCount <= 3
+                    ? callFixed((NativeFunction) callee, argCount)
+                    : callee.call(null, Arrays.asList(Arrays.copyOfRange(stack, sp - argCount, sp)));
+        } catch (NativeError e) {
+            throw error(frame, e.getMessage());
+        }
+        Arrays.fill(stack, sp - argCount, sp, null);
+        sp -= argCount;
+        stack[sp - 1] = result;
+    }
+
+    // Arguments straight from the stack, no list of them is made
+    private Object callFixed(NativeFunction callee, int argCount) {
+        int base = sp - argCount;
+        switch (argCount) {
+            case 0: return callee.call0();
+            case 1: return callee.call1(stack[base]);
+            case 2: return callee.call2(stack[base], stack[base + 1]);
+            default: return callee.call3(stack[base], stack[base + 1], stack[base + 2]);
+        }
+    }
+
+    private void call(Closure closure, int argCount, CallFrame caller) {
+        if (closure.prototype.arity != argCount) {
+            throw error(caller, "Expected " + closure.prototype.arity + " arguments but got " + argCount + ".");
+        }
+        if (frameCount == FRAMES_MAX) {
+            throw error(caller, "Stack overflow.");
+        }
+        pushFrame(closure, argCount);
+    }
+
+    private void pushFrame(Closure closure, int argCount) {
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+        CallFrame frame = frames[frameCount];
+        if (frame == null) {
+            frame = frames[frameCount] = new CallFrame();
+        }
+        frame.closure = closure;
+        frame.ip = 0;
+        frame.base = sp - 1 - argCount;
+        frameCount++;
+    }
+
+    private BoundMethod bindMethod(CallFrame frame, Object receiver, VmClass klass, String name) {
+        Closure method = klass.methods.get(name);
+        if (method == null) {
+            throw error(frame, "Undefined property '" + name + "'.");
+        }
+        return new BoundMethod(receiver, method);
+    }
+
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        Upvalue upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+        if (upvalue != null && upvalue.slot == slot) {
+            return upvalue;
+        }
+
+        Upvalue created = new Upvalue(slot);
+        created.next = upvalue;
+        if (previous == null) {
+            openUpvalues = created;
+        } else {
+            previous.next = created;
+        }
+        return created;
+    }
+
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            Upvalue upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.isOpen = false;
+            openUpvalues = upvalue.next;
+        }
+    }
+    //endregion
+
+    //region utils part
+    private void push(Object value) {
+        if (sp == stack.length) {
+            stack = Arrays.copyOf(stack, sp * 2);
+        }
+        stack[sp++] = value;
+    }
+
+    private Object pop() {
+        Object value = stack[--sp];
+        stack[sp] = null;
+        return value;
+    }
+
+    private RuntimeError error(CallFrame frame, String message) {
+        return new RuntimeError(frame.closure.prototype.tokenAt(frame.ip), message);
+    }
+
+    private void checkNumberOperand(CallFrame frame) {
+        if (stack[sp - 1] instanceof Double) return;
+        throw error(frame, "Operand must be a number.");
+    }
+
+    private void checkNumberOperands(CallFrame frame) {
+        if (stack[sp - 2] instanceof Double && stack[sp - 1] instanceof Double) return;
+        throw error(frame, "Operands must be numbers.");
+    }
+
+    private Object add(Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            return (double) left + (double) right;
+        }
+        if (Rope.isString(left) && (Rope.isString(right) || right instanceof Double)
+                || left instanceof Double && Rope.isString(right)) {
+            return Rope.concat(left, right);
+        }
+        return null;
+    }
+    //endregion
+}
@@ -0,0 +1,19 @@
+package main.java.io.github.tl.vm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class VmClass {
+    final String name;
+    // Inherited methods are copied down when the class is defined
+    final Map<String, Closure> methods = new HashMap<>();
+
+    VmClass(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}